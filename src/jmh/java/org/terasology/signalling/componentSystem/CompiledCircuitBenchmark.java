@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.signalling.network.SignalPositions;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gate evaluation through {@link CompiledCircuit}: a chain of NOT gates toggled from outside, and a clock (a NOT gate
+ * feeding itself) fanning out to OR gates driving lamps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledCircuitBenchmark {
+    @Param({"GATE_CHAIN", "CLOCK_FAN_OUT"})
+    public String workload;
+
+    @Param({"64", "1024"})
+    public int gates;
+
+    private CompiledCircuit circuit;
+    private long time;
+    private int boundaryChanges;
+    private final CompiledCircuit.BoundaryListener listener = (changed, gate) -> boundaryChanges++;
+
+    @Setup
+    public void setup() {
+        circuit = workload.equals("GATE_CHAIN") ? gateChain(gates) : clockFanOut(gates);
+        for (int gate = 0; gate < gates; gate++) {
+            circuit.markDirty(gate);
+        }
+    }
+
+    /**
+     * One tick of the circuit. The chain input toggles on every tick, so a wave of changes travels down the chain.
+     */
+    @Benchmark
+    public int tick() {
+        time++;
+        if (circuit.externalValues.length > 0) {
+            circuit.externalValues[0] = circuit.externalValues[0] == 0 ? 15 : 0;
+            circuit.markDirty(0);
+        }
+        circuit.step(time);
+        circuit.commit(listener);
+        return boundaryChanges;
+    }
+
+    private static CompiledCircuit gateChain(int count) {
+        int[] ones = ones(count);
+        int[] starts = range(count + 1);
+        int[] drivers = new int[count];
+        int[] receivers = new int[count];
+        for (int gate = 0; gate < count; gate++) {
+            drivers[gate] = gate == 0 ? -1 : gate - 1;
+            receivers[gate] = gate == count - 1 ? -1 : gate + 1;
+        }
+        return new CompiledCircuit(positions(count), entities(count), types(count, CompiledCircuit.NOT), strengths(count),
+                new long[count], ones, starts, starts, drivers, ones, new long[]{SignalPositions.pack(-1, 0, 0)}, new int[]{0},
+                starts, receivers, positions(count));
+    }
+
+    private static CompiledCircuit clockFanOut(int count) {
+        byte[] types = types(count, CompiledCircuit.OR);
+        types[0] = CompiledCircuit.NOT;
+        int[] starts = range(count + 1);
+        int[] drivers = new int[count];
+        int[] distances = new int[count];
+        for (int gate = 0; gate < count; gate++) {
+            distances[gate] = 1 + gate % 8;
+        }
+        // The clock receives its own output and drives every gate; each other gate drives a lamp.
+        int[] receiverStart = new int[count + 1];
+        int[] receivers = new int[2 * count - 1];
+        long[] receiverPositions = new long[receivers.length];
+        for (int gate = 0; gate < count; gate++) {
+            receivers[gate] = gate;
+        }
+        for (int gate = 1; gate <= count; gate++) {
+            receiverStart[gate] = count + gate - 1;
+        }
+        for (int gate = 1; gate < count; gate++) {
+            receivers[count + gate - 1] = -1;
+        }
+        return new CompiledCircuit(positions(count), entities(count), types, strengths(count), new long[count], ones(count),
+                starts, starts, drivers, distances, new long[0], new int[0], receiverStart, receivers, receiverPositions);
+    }
+
+    private static long[] positions(int count) {
+        long[] positions = new long[count];
+        for (int gate = 0; gate < count; gate++) {
+            positions[gate] = SignalPositions.pack(gate, 0, 0);
+        }
+        return positions;
+    }
+
+    private static EntityRef[] entities(int count) {
+        EntityRef[] entities = new EntityRef[count];
+        Arrays.fill(entities, EntityRef.NULL);
+        return entities;
+    }
+
+    private static byte[] types(int count, byte type) {
+        byte[] types = new byte[count];
+        Arrays.fill(types, type);
+        return types;
+    }
+
+    private static byte[] strengths(int count) {
+        byte[] strengths = new byte[count];
+        Arrays.fill(strengths, (byte) 15);
+        return strengths;
+    }
+
+    private static int[] ones(int count) {
+        int[] ones = new int[count];
+        Arrays.fill(ones, 1);
+        return ones;
+    }
+
+    private static int[] range(int count) {
+        int[] range = new int[count];
+        for (int i = 0; i < count; i++) {
+            range[i] = i;
+        }
+        return range;
+    }
+}
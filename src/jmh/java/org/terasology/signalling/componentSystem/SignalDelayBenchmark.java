@@ -0,0 +1,143 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.math.Side;
+import org.terasology.signalling.network.SignalPositions;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongConsumer;
+
+/**
+ * The per-tick work of {@code SignalSystem.update}: draining the delay wheel and evaluating the leaves marked dirty.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignalDelayBenchmark {
+    private static final long TICK = 16;
+
+    /**
+     * The number of delayed outputs kept pending.
+     */
+    @Param({"1000", "100000"})
+    public int pending;
+
+    private SignalTimingWheel delays;
+    private long[] delayTimes;
+    private long now;
+    private int next;
+    private SignalPropagationQueue propagationQueue;
+    private long[] leaves;
+    private long evaluated;
+    private final LongConsumer evaluator = leaf -> evaluated += leaf;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        delayTimes = new long[pending];
+        for (int i = 0; i < pending; i++) {
+            delayTimes[i] = 100 + random.nextInt(2000);
+        }
+        delays = new SignalTimingWheel(10, 512);
+        for (int i = 0; i < pending; i++) {
+            delays.schedule(new BenchmarkDelay(i, delayTimes[i], now));
+        }
+
+        propagationQueue = new SignalPropagationQueue();
+        leaves = new long[Math.min(pending, 4096)];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = SignalPositions.pack(i % 64, 0, i / 64);
+        }
+    }
+
+    /**
+     * One tick: the outputs that became due are re-scheduled, keeping the number of pending outputs steady, as with
+     * clocks.
+     */
+    @Benchmark
+    public int delayTick() {
+        now += TICK;
+        int due = 0;
+        for (SignalSystem.SignalDelayHandler handler : delays.pollDue(now)) {
+            int id = ((BenchmarkDelay) handler).id;
+            due++;
+            delays.schedule(new BenchmarkDelay(id, delayTimes[id], now));
+        }
+        return due;
+    }
+
+    /**
+     * Replacing the pending output of a leaf before it is due, as with gates whose inputs change quickly.
+     */
+    @Benchmark
+    public int reschedule() {
+        int id = next;
+        next = (next + 1) % pending;
+        delays.schedule(new BenchmarkDelay(id, delayTimes[id], now));
+        return delays.size();
+    }
+
+    /**
+     * A clock fanning out to every leaf: each is marked dirty, then the whole wave is evaluated.
+     */
+    @Benchmark
+    public long fanOutWave() {
+        for (long leaf : leaves) {
+            propagationQueue.markDirty(leaf);
+        }
+        propagationQueue.process(Integer.MAX_VALUE, evaluator);
+        return evaluated;
+    }
+
+    /**
+     * A delayed output identified by a number rather than by an entity, so that no entity manager is needed.
+     */
+    private static final class BenchmarkDelay extends SignalSystem.SignalDelayHandler {
+        private final int id;
+
+        private BenchmarkDelay(int id, long delay, long currentTime) {
+            super(delay, currentTime, EntityRef.NULL, (byte) 15, Side.TOP);
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof BenchmarkDelay && ((BenchmarkDelay) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * An in-memory stand-in for the block entities of the world, holding just what the signal code reads: which blocks are
+ * cables, which are leaves with the sides they connect on, and the outputs of the leaves.
+ * <p>
+ * The factory methods build the synthetic workloads of the benchmarks, each with an emitter, a receiver as far from it
+ * as the topology allows, and a cable in the middle to remove and place again.
+ */
+public class InMemorySignalWorld implements SignalNodeLookup {
+    private final TLongSet cables = new TLongHashSet();
+    private final TLongIntMap leaves = new TLongIntHashMap();
+    private final TLongObjectMap<byte[]> outputs = new TLongObjectHashMap<>();
+
+    private long emitter;
+    private long receiver;
+    private long middleCable;
+
+    /**
+     * A straight line of cables along x, with an emitter at one end and a receiver at the other.
+     *
+     * @param length The number of cables
+     */
+    public static InMemorySignalWorld line(int length, int emitterStrength) {
+        InMemorySignalWorld world = new InMemorySignalWorld();
+        for (int x = 1; x <= length; x++) {
+            world.addCable(SignalPositions.pack(x, 0, 0));
+        }
+        world.emitter = SignalPositions.pack(0, 0, 0);
+        world.receiver = SignalPositions.pack(length + 1, 0, 0);
+        world.middleCable = SignalPositions.pack(length / 2 + 1, 0, 0);
+        world.addLeaf(world.emitter, SignalPositions.ALL_SIDES);
+        world.addLeaf(world.receiver, SignalPositions.ALL_SIDES);
+        world.setOutputs(world.emitter, emitterStrength);
+        return world;
+    }
+
+    /**
+     * A solid cube of cables, with an emitter on one corner, a receiver on the opposite corner, and lamps on every
+     * fourth block of the top face.
+     *
+     * @param size The number of cables along each edge
+     */
+    public static InMemorySignalWorld mesh(int size, int emitterStrength) {
+        InMemorySignalWorld world = new InMemorySignalWorld();
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                for (int z = 0; z < size; z++) {
+                    world.addCable(SignalPositions.pack(x, y, z));
+                }
+            }
+        }
+        for (int x = 0; x < size; x += 4) {
+            for (int z = 0; z < size; z += 4) {
+                world.addLeaf(SignalPositions.pack(x, size, z), SignalPositions.ALL_SIDES);
+            }
+        }
+        world.emitter = SignalPositions.pack(-1, 0, 0);
+        world.receiver = SignalPositions.pack(size, size - 1, size - 1);
+        world.middleCable = SignalPositions.pack(size / 2, size / 2, size / 2);
+        world.addLeaf(world.emitter, SignalPositions.ALL_SIDES);
+        world.addLeaf(world.receiver, SignalPositions.ALL_SIDES);
+        world.setOutputs(world.emitter, emitterStrength);
+        return world;
+    }
+
+    public void addCable(long position) {
+        cables.add(position);
+    }
+
+    public void removeCable(long position) {
+        cables.remove(position);
+    }
+
+    public void addLeaf(long position, int sides) {
+        leaves.put(position, sides);
+        outputs.put(position, new byte[6]);
+    }
+
+    /**
+     * Sets the output of a leaf on every side.
+     */
+    public void setOutputs(long leaf, int strength) {
+        byte[] leafOutputs = outputs.get(leaf);
+        for (int side = 0; side < leafOutputs.length; side++) {
+            leafOutputs[side] = (byte) strength;
+        }
+    }
+
+    public long getEmitter() {
+        return emitter;
+    }
+
+    public long getReceiver() {
+        return receiver;
+    }
+
+    public long getMiddleCable() {
+        return middleCable;
+    }
+
+    /**
+     * @return The ordinal of a side of the receiver that touches a cable
+     */
+    public int getReceiverSide() {
+        for (int side = 0; side < 6; side++) {
+            if (cables.contains(SignalPositions.neighbor(receiver, side))) {
+                return side;
+            }
+        }
+        throw new IllegalStateException("The receiver is not connected");
+    }
+
+    /**
+     * @return The ordinal of a side of the emitter that touches a cable
+     */
+    public int getEmitterSide() {
+        for (int side = 0; side < 6; side++) {
+            if (cables.contains(SignalPositions.neighbor(emitter, side))) {
+                return side;
+            }
+        }
+        throw new IllegalStateException("The emitter is not connected");
+    }
+
+    @Override
+    public boolean isCable(Vector3i position) {
+        return cables.contains(SignalPositions.pack(position));
+    }
+
+    @Override
+    public boolean isLeaf(Vector3i position) {
+        return leaves.containsKey(SignalPositions.pack(position));
+    }
+
+    @Override
+    public int getLeafSides(Vector3i position) {
+        return leaves.get(SignalPositions.pack(position));
+    }
+
+    @Override
+    public int getLeafOutput(Vector3i position, int side) {
+        byte[] leafOutputs = outputs.get(SignalPositions.pack(position));
+        return leafOutputs == null ? 0 : leafOutputs[side];
+    }
+}
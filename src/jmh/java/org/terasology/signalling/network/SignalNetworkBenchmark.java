@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cable network queries behind {@code SignalSystem.getLeafInput}, {@code findDistanceToLeaf} and the block
+ * placement handlers, on long cable lines and solid cable meshes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignalNetworkBenchmark {
+    @Param({"LINE", "MESH"})
+    public String topology;
+
+    /**
+     * The number of cables, rounded down to a cube for meshes.
+     */
+    @Param({"256", "4096"})
+    public int cables;
+
+    @Param({"15", "-1"})
+    public int emitterStrength;
+
+    private InMemorySignalWorld world;
+    private SignalNetworkModel model;
+    private long receiver;
+    private int receiverSide;
+    private long emitter;
+    private int emitterSide;
+    private long middleCable;
+    private long firstCable;
+    private boolean emitterOn = true;
+
+    @Setup
+    public void setup() {
+        if (topology.equals("LINE")) {
+            world = InMemorySignalWorld.line(cables, emitterStrength);
+        } else {
+            world = InMemorySignalWorld.mesh((int) Math.cbrt(cables + 0.5), emitterStrength);
+        }
+        model = new SignalNetworkModel(world);
+        receiver = world.getReceiver();
+        receiverSide = world.getReceiverSide();
+        emitter = world.getEmitter();
+        emitterSide = world.getEmitterSide();
+        middleCable = world.getMiddleCable();
+        firstCable = SignalPositions.neighbor(emitter, emitterSide);
+        model.resolveInput(receiver, receiverSide);
+    }
+
+    /**
+     * {@code getLeafInput} with nothing changed since the last query.
+     */
+    @Benchmark
+    public int resolveInputCached() {
+        return model.resolveInput(receiver, receiverSide);
+    }
+
+    /**
+     * {@code getLeafInput} right after the emitter toggled, as when a switch or clock changes.
+     */
+    @Benchmark
+    public int resolveInputAfterOutputChange() {
+        emitterOn = !emitterOn;
+        int strength = emitterOn ? emitterStrength : 0;
+        world.setOutputs(emitter, strength);
+        model.outputChanged(emitter, emitterSide, strength);
+        return model.resolveInput(receiver, receiverSide);
+    }
+
+    /**
+     * {@code findDistanceToLeaf} on a network seen for the first time, including its discovery.
+     */
+    @Benchmark
+    public int discoverAndFindLeaves() {
+        return new SignalNetworkModel(world).getLeafDistances(firstCable).size();
+    }
+
+    /**
+     * Removing a cable from the middle of the network and placing it again, splitting and merging the network.
+     */
+    @Benchmark
+    public int removeAndPlaceCable() {
+        world.removeCable(middleCable);
+        model.cableRemoved(middleCable);
+        world.addCable(middleCable);
+        model.cableAdded(middleCable);
+        return model.resolveInput(receiver, receiverSide);
+    }
+}
@@ -15,14 +15,16 @@
  */
 package org.terasology.signalling.action;
 
+import org.terasology.entitySystem.Component;
 import org.terasology.entitySystem.entity.EntityRef;
-import org.terasology.entitySystem.event.ReceiveEvent;
 import org.terasology.entitySystem.systems.BaseComponentSystem;
 import org.terasology.entitySystem.systems.RegisterMode;
 import org.terasology.entitySystem.systems.RegisterSystem;
 import org.terasology.math.Side;
 import org.terasology.registry.In;
+import org.terasology.signalling.componentSystem.CompilableGateHandler;
 import org.terasology.signalling.componentSystem.SignalSystem;
+import org.terasology.signalling.components.SignalBusComponent;
 import org.terasology.signalling.components.SignalLeafComponent;
 import org.terasology.signalling.components.gates.AndGateComponent;
 import org.terasology.signalling.components.gates.NotGateComponent;
@@ -31,15 +33,24 @@ import org.terasology.signalling.components.gates.XorGateComponent;
 import org.terasology.signalling.event.LeafNodeSignalChange;
 import org.terasology.world.block.BlockComponent;
 
+import java.util.function.IntBinaryOperator;
+
 @RegisterSystem(RegisterMode.AUTHORITY)
 public class GateAction extends BaseComponentSystem {
 
     @In
     private SignalSystem signalSystem;
 
-    @ReceiveEvent(components = {BlockComponent.class, XorGateComponent.class, SignalLeafComponent.class})
-    public void signalXorChange(LeafNodeSignalChange event, EntityRef entity,SignalLeafComponent signalLeafComponent, BlockComponent blockComponent, XorGateComponent xorGateComponent) {
-        if (event.getInputs().size() % 2 == 1) {
+    @Override
+    public void initialise() {
+        signalSystem.registerGateHandler(XorGateComponent.class, new GateHandler<>(XorGateComponent.class, this::signalXorChange));
+        signalSystem.registerGateHandler(AndGateComponent.class, new GateHandler<>(AndGateComponent.class, this::signalAndChange));
+        signalSystem.registerGateHandler(OrGateComponent.class, new GateHandler<>(OrGateComponent.class, this::signalOrChange));
+        signalSystem.registerGateHandler(NotGateComponent.class, new GateHandler<>(NotGateComponent.class, this::signalNotChange));
+    }
+
+    private void signalXorChange(LeafNodeSignalChange event, EntityRef entity,SignalLeafComponent signalLeafComponent, BlockComponent blockComponent, XorGateComponent xorGateComponent) {
+        if (event.getInputCount() % 2 == 1) {
             // An odd number of inputs are active: Output HIGH.
             for (Side side : signalLeafComponent.outputs) {
                 signalSystem.setLeafOutput(entity, side, xorGateComponent.strength, xorGateComponent.delay);
@@ -50,13 +61,13 @@ public class GateAction extends BaseComponentSystem {
                 signalSystem.setLeafOutput(entity, side, (byte) 0, xorGateComponent.delay);
             }
         }
+        updateBusOutputs(entity, event, 0, (first, second) -> first ^ second, false);
     }
 
-    @ReceiveEvent(components = {BlockComponent.class, AndGateComponent.class, SignalLeafComponent.class})
-    public void signalAndChange(LeafNodeSignalChange event, EntityRef entity,SignalLeafComponent signalLeafComponent, BlockComponent blockComponent, AndGateComponent andGateComponent) {
+    private void signalAndChange(LeafNodeSignalChange event, EntityRef entity,SignalLeafComponent signalLeafComponent, BlockComponent blockComponent, AndGateComponent andGateComponent) {
 
 
-        if (event.getInputs().size() == signalSystem.getActiveSides(entity,signalLeafComponent.inputs).size() && event.getInputs().size() != 0) {
+        if (event.getInputCount() == signalSystem.getConnectedInputCount(entity) && event.getInputCount() != 0) {
             // More than one input is connected, and all of them are HIGH: Output HIGH.
             for (Side side : signalLeafComponent.outputs) {
                 signalSystem.setLeafOutput(entity, side, andGateComponent.strength, andGateComponent.delay);
@@ -67,11 +78,11 @@ public class GateAction extends BaseComponentSystem {
                 signalSystem.setLeafOutput(entity, side, (byte) 0, andGateComponent.delay);
             }
         }
+        updateBusOutputs(entity, event, -1, (first, second) -> first & second, false);
     }
 
-    @ReceiveEvent(components = {BlockComponent.class, OrGateComponent.class, SignalLeafComponent.class})
-    public void signalOrChange(LeafNodeSignalChange event, EntityRef entity,SignalLeafComponent signalLeafComponent, BlockComponent blockComponent, OrGateComponent orGateComponent) {
-        if (event.getInputs().size() > 0) {
+    private void signalOrChange(LeafNodeSignalChange event, EntityRef entity,SignalLeafComponent signalLeafComponent, BlockComponent blockComponent, OrGateComponent orGateComponent) {
+        if (event.getInputCount() > 0) {
             // At least one input is HIGH: Output HIGH.
             for (Side side : signalLeafComponent.outputs) {
                 signalSystem.setLeafOutput(entity, side, orGateComponent.strength, orGateComponent.delay);
@@ -82,11 +93,11 @@ public class GateAction extends BaseComponentSystem {
                 signalSystem.setLeafOutput(entity, side, (byte) 0, orGateComponent.delay);
             }
         }
+        updateBusOutputs(entity, event, 0, (first, second) -> first | second, false);
     }
 
-    @ReceiveEvent(components = {BlockComponent.class, NotGateComponent.class, SignalLeafComponent.class})
-    public void signalNotChange(LeafNodeSignalChange event, EntityRef entity,SignalLeafComponent signalLeafComponent, BlockComponent blockComponent, NotGateComponent notGateComponent) {
-        if (event.getInputs().size() > 0) {
+    private void signalNotChange(LeafNodeSignalChange event, EntityRef entity,SignalLeafComponent signalLeafComponent, BlockComponent blockComponent, NotGateComponent notGateComponent) {
+        if (event.getInputCount() > 0) {
             // Either a HIGH input, or no input at all: Output LOW.
             for (Side side : signalLeafComponent.outputs) {
                 signalSystem.setLeafOutput(entity, side, (byte) 0, notGateComponent.delay);
@@ -97,5 +108,80 @@ public class GateAction extends BaseComponentSystem {
                 signalSystem.setLeafOutput(entity, side, notGateComponent.strength, notGateComponent.delay);
             }
         }
+        updateBusOutputs(entity, event, 0, (first, second) -> first | second, true);
+    }
+
+    /**
+     * Applies a gate to every channel of the connected bus inputs of a leaf, and sets the result on its bus outputs. A
+     * gate without any connected bus input computes as if all its bus inputs were LOW, except AND which outputs LOW.
+     *
+     * @param identity The value the inputs are folded from
+     * @param combine  Combines the channels folded so far with those of one more input
+     * @param invert   Whether the folded channels are inverted, for NOT
+     */
+    private void updateBusOutputs(EntityRef entity, LeafNodeSignalChange event, int identity, IntBinaryOperator combine, boolean invert) {
+        SignalBusComponent signalBusComponent = entity.getComponent(SignalBusComponent.class);
+        if (signalBusComponent == null)
+            return;
+        int channels = identity;
+        boolean connected = false;
+        for (Side side : signalBusComponent.inputs) {
+            if (event.isBusInputConnected(side)) {
+                channels = combine.applyAsInt(channels, event.getBusInput(side));
+                connected = true;
+            }
+        }
+        if (!connected)
+            channels = 0;
+        if (invert)
+            channels = ~channels;
+        for (Side side : signalBusComponent.outputs) {
+            signalSystem.setBusOutput(entity, side, channels);
+        }
+    }
+
+    private interface GateLogic<T extends Component> {
+        void evaluate(LeafNodeSignalChange event, EntityRef entity, SignalLeafComponent signalLeafComponent, BlockComponent blockComponent, T gateComponent);
+    }
+
+    /**
+     * Evaluates one kind of gate when called from the signal propagation loop.
+     */
+    private class GateHandler<T extends Component> implements CompilableGateHandler {
+        private final Class<T> gateType;
+        private final GateLogic<T> logic;
+
+        GateHandler(Class<T> gateType, GateLogic<T> logic) {
+            this.gateType = gateType;
+            this.logic = logic;
+        }
+
+        @Override
+        public Class<? extends Component> getGateType() {
+            return gateType;
+        }
+
+        @Override
+        public void handleGateSignalChange(EntityRef entity) {
+            signalSystem.signalLeafChange(entity);
+        }
+
+        @Override
+        public void handleGateSignalChange(EntityRef entity, LeafNodeSignalChange inputs) {
+            // Same inputs and connected sides, same outputs: they were set when either last changed.
+            if (!inputs.hasInputChanges() && !inputs.hasBusInputs())
+                return;
+            SignalLeafComponent signalLeafComponent = entity.getComponent(SignalLeafComponent.class);
+            BlockComponent blockComponent = entity.getComponent(BlockComponent.class);
+            T gateComponent = entity.getComponent(gateType);
+            if (signalLeafComponent != null && blockComponent != null && gateComponent != null) {
+                logic.evaluate(inputs, entity, signalLeafComponent, blockComponent, gateComponent);
+            }
+        }
+
+        @Override
+        public void handleDelayedTrigger(String actionId, EntityRef entity) {
+            // Gate delays are kept by the signal system itself.
+        }
     }
 }
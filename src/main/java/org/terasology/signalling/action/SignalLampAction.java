@@ -21,12 +21,10 @@ import org.terasology.entitySystem.systems.BaseComponentSystem;
 import org.terasology.entitySystem.systems.RegisterMode;
 import org.terasology.entitySystem.systems.RegisterSystem;
 import org.terasology.registry.In;
-import org.terasology.signalling.componentSystem.SignalSystem;
+import org.terasology.signalling.componentSystem.SignalBlockUpdateSystem;
 import org.terasology.signalling.components.SignalLeafComponent;
 import org.terasology.signalling.components.SignalLampComponent;
 import org.terasology.signalling.event.LeafNodeSignalChange;
-import org.terasology.world.BlockEntityRegistry;
-import org.terasology.world.WorldProvider;
 import org.terasology.world.block.Block;
 import org.terasology.world.block.BlockComponent;
 import org.terasology.world.block.BlockManager;
@@ -38,10 +36,7 @@ public class SignalLampAction extends BaseComponentSystem {
     private BlockManager blockManager;
 
     @In
-    private WorldProvider worldProvider;
-
-    @In
-    private BlockEntityRegistry blockEntityRegistry;
+    private SignalBlockUpdateSystem blockUpdateSystem;
 
     private Block lampTurnedOff;
     private Block lampTurnedOn;
@@ -54,11 +49,13 @@ public class SignalLampAction extends BaseComponentSystem {
 
     @ReceiveEvent(components = {BlockComponent.class, SignalLampComponent.class, SignalLeafComponent.class})
     public void signalChange(LeafNodeSignalChange event, EntityRef entity, BlockComponent blockComponent) {
+        if (!event.hasInputChanges())
+            return;
 
-        if (event.getInputs().size() > 0) {
-            worldProvider.setBlock(blockComponent.getPosition(), lampTurnedOn);
+        if (event.getInputCount() > 0) {
+            blockUpdateSystem.requestBlock(blockComponent.getPosition(), lampTurnedOn);
         } else {
-            worldProvider.setBlock(blockComponent.getPosition(), lampTurnedOff);
+            blockUpdateSystem.requestBlock(blockComponent.getPosition(), lampTurnedOff);
         }
     }
 }
@@ -38,6 +38,7 @@ public class SignalSwitchAction extends BaseComponentSystem {
     @ReceiveEvent(components = {BlockComponent.class, ToggleSwitchComponent.class, SignalLeafComponent.class})
     public void signalActivated(ActivateEvent event, EntityRef entity, ToggleSwitchComponent signalSwitchComponent, SignalLeafComponent leafNodeComponent) {
         signalSwitchComponent.isActive = !signalSwitchComponent.isActive;
+        entity.saveComponent(signalSwitchComponent);
         if (signalSwitchComponent.isActive) {
             for (Side side : leafNodeComponent.outputs) {
                 signalSystem.setLeafOutput(entity, side, signalSwitchComponent.strength);
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.action;
+
+import org.terasology.entitySystem.systems.BaseComponentSystem;
+import org.terasology.entitySystem.systems.RegisterMode;
+import org.terasology.entitySystem.systems.RegisterSystem;
+import org.terasology.registry.In;
+import org.terasology.signalling.action.word.AdderHandler;
+import org.terasology.signalling.action.word.ComparatorHandler;
+import org.terasology.signalling.action.word.CounterHandler;
+import org.terasology.signalling.action.word.RamHandler;
+import org.terasology.signalling.action.word.RegisterHandler;
+import org.terasology.signalling.componentSystem.SignalSystem;
+import org.terasology.signalling.components.word.AdderComponent;
+import org.terasology.signalling.components.word.ComparatorComponent;
+import org.terasology.signalling.components.word.CounterComponent;
+import org.terasology.signalling.components.word.RamComponent;
+import org.terasology.signalling.components.word.RegisterComponent;
+
+/**
+ * Registers the handlers of the word-level blocks, which evaluate each block in one pass over its inputs.
+ */
+@RegisterSystem(RegisterMode.AUTHORITY)
+public class WordBlockAction extends BaseComponentSystem {
+
+    @In
+    private SignalSystem signalSystem;
+
+    @Override
+    public void initialise() {
+        signalSystem.registerGateHandler(RegisterComponent.class, new RegisterHandler(signalSystem));
+        signalSystem.registerGateHandler(CounterComponent.class, new CounterHandler(signalSystem));
+        signalSystem.registerGateHandler(AdderComponent.class, new AdderHandler(signalSystem));
+        signalSystem.registerGateHandler(ComparatorComponent.class, new ComparatorHandler(signalSystem));
+        signalSystem.registerGateHandler(RamComponent.class, new RamHandler(signalSystem));
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.action.word;
+
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.math.Side;
+import org.terasology.signalling.componentSystem.SignalSystem;
+import org.terasology.signalling.components.SignalBusComponent;
+import org.terasology.signalling.components.word.AdderComponent;
+
+/**
+ * Evaluates adders: words in on the left and right, the sum (or left minus right) out at the front, and the carry (or
+ * borrow) out at the top.
+ */
+public class AdderHandler extends WordBlockHandler {
+    public AdderHandler(SignalSystem signalSystem) {
+        super(signalSystem);
+    }
+
+    @Override
+    public void handleGateSignalChange(EntityRef entity) {
+        AdderComponent adder = entity.getComponent(AdderComponent.class);
+        SignalBusComponent signalBusComponent = entity.getComponent(SignalBusComponent.class);
+        if (adder == null || signalBusComponent == null) {
+            return;
+        }
+        long mask = signalBusComponent.getChannelMask() & 0xFFFFFFFFL;
+        long left = readWord(entity, Side.LEFT) & 0xFFFFFFFFL;
+        long right = readWord(entity, Side.RIGHT) & 0xFFFFFFFFL;
+        long result = adder.subtract ? left - right : left + right;
+        writeWord(entity, Side.FRONT, (int) (result & mask));
+        setHigh(entity, Side.TOP, result < 0 || result > mask, adder.strength);
+    }
+}
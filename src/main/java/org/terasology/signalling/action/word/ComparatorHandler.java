@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.action.word;
+
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.math.Side;
+import org.terasology.signalling.componentSystem.SignalSystem;
+import org.terasology.signalling.components.word.ComparatorComponent;
+
+/**
+ * Evaluates comparators: words in on the left and right, out at the front when left is greater, at the top when they
+ * are equal and at the bottom when left is less.
+ */
+public class ComparatorHandler extends WordBlockHandler {
+    public ComparatorHandler(SignalSystem signalSystem) {
+        super(signalSystem);
+    }
+
+    @Override
+    public void handleGateSignalChange(EntityRef entity) {
+        ComparatorComponent comparator = entity.getComponent(ComparatorComponent.class);
+        if (comparator == null) {
+            return;
+        }
+        int comparison = Integer.compareUnsigned(readWord(entity, Side.LEFT), readWord(entity, Side.RIGHT));
+        setHigh(entity, Side.FRONT, comparison > 0, comparator.strength);
+        setHigh(entity, Side.TOP, comparison == 0, comparator.strength);
+        setHigh(entity, Side.BOTTOM, comparison < 0, comparator.strength);
+    }
+}
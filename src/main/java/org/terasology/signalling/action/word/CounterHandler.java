@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.action.word;
+
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.math.Side;
+import org.terasology.signalling.componentSystem.SignalSystem;
+import org.terasology.signalling.components.SignalBusComponent;
+import org.terasology.signalling.components.word.CounterComponent;
+
+/**
+ * Evaluates counters: count in on the left, reset in on the right, the count out at the front.
+ */
+public class CounterHandler extends WordBlockHandler {
+    public CounterHandler(SignalSystem signalSystem) {
+        super(signalSystem);
+    }
+
+    @Override
+    public void handleGateSignalChange(EntityRef entity) {
+        CounterComponent counter = entity.getComponent(CounterComponent.class);
+        SignalBusComponent signalBusComponent = entity.getComponent(SignalBusComponent.class);
+        if (counter == null || signalBusComponent == null) {
+            return;
+        }
+        boolean clock = isHigh(entity, Side.LEFT);
+        int value = counter.value;
+        if (isHigh(entity, Side.RIGHT)) {
+            value = 0;
+        } else if (clock && !counter.clockHigh) {
+            value = (value + 1) & signalBusComponent.getChannelMask();
+        }
+        if (clock != counter.clockHigh || value != counter.value) {
+            counter.clockHigh = clock;
+            counter.value = value;
+            entity.saveComponent(counter);
+        }
+        writeWord(entity, Side.FRONT, value);
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.action.word;
+
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.math.Side;
+import org.terasology.signalling.componentSystem.SignalSystem;
+import org.terasology.signalling.components.word.RamComponent;
+
+/**
+ * Evaluates memories: address in on the left, data in at the back, write in on the right, the addressed word out at
+ * the front.
+ */
+public class RamHandler extends WordBlockHandler {
+    public RamHandler(SignalSystem signalSystem) {
+        super(signalSystem);
+    }
+
+    @Override
+    public void handleGateSignalChange(EntityRef entity) {
+        RamComponent ram = entity.getComponent(RamComponent.class);
+        if (ram == null || ram.contents == null || ram.contents.length == 0) {
+            return;
+        }
+        int address = Integer.remainderUnsigned(readWord(entity, Side.LEFT), ram.contents.length);
+        boolean write = isHigh(entity, Side.RIGHT);
+        if (write != ram.writeHigh) {
+            if (write) {
+                ram.contents[address] = readWord(entity, Side.BACK);
+            }
+            ram.writeHigh = write;
+            entity.saveComponent(ram);
+        }
+        writeWord(entity, Side.FRONT, ram.contents[address]);
+    }
+}
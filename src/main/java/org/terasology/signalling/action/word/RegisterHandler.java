@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.action.word;
+
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.math.Side;
+import org.terasology.signalling.componentSystem.SignalSystem;
+import org.terasology.signalling.components.word.RegisterComponent;
+
+/**
+ * Evaluates registers: data bus in at the back, clock in on the left, the stored word out at the front.
+ */
+public class RegisterHandler extends WordBlockHandler {
+    public RegisterHandler(SignalSystem signalSystem) {
+        super(signalSystem);
+    }
+
+    @Override
+    public void handleGateSignalChange(EntityRef entity) {
+        RegisterComponent register = entity.getComponent(RegisterComponent.class);
+        if (register == null) {
+            return;
+        }
+        boolean clock = isHigh(entity, Side.LEFT);
+        if (clock != register.clockHigh) {
+            if (clock) {
+                register.value = readWord(entity, Side.BACK);
+            }
+            register.clockHigh = clock;
+            entity.saveComponent(register);
+        }
+        writeWord(entity, Side.FRONT, register.value);
+    }
+}
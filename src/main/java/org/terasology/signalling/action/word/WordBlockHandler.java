@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.action.word;
+
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.math.Side;
+import org.terasology.signalling.componentSystem.GateSignalChangeHandler;
+import org.terasology.signalling.componentSystem.SignalSystem;
+
+/**
+ * Base of the handlers of word-level blocks. They read their bus inputs as whole words and compute their outputs in one
+ * evaluation, where the same logic built from gates would take an entity and an event per bit.
+ * <p>
+ * Sides are unrotated sides of the block.
+ */
+public abstract class WordBlockHandler implements GateSignalChangeHandler {
+    protected final SignalSystem signalSystem;
+
+    protected WordBlockHandler(SignalSystem signalSystem) {
+        this.signalSystem = signalSystem;
+    }
+
+    /**
+     * Word blocks compute right away and schedule no delayed actions.
+     */
+    @Override
+    public void handleDelayedTrigger(String actionId, EntityRef entity) {
+    }
+
+    protected boolean isHigh(EntityRef entity, Side side) {
+        return signalSystem.getLeafInput(entity, side) != 0;
+    }
+
+    protected int readWord(EntityRef entity, Side side) {
+        return signalSystem.getBusInput(entity, side);
+    }
+
+    protected void writeWord(EntityRef entity, Side side, int word) {
+        signalSystem.setBusOutput(entity, side, word);
+    }
+
+    protected void setHigh(EntityRef entity, Side side, boolean high, byte strength) {
+        signalSystem.setLeafOutput(entity, side, high ? strength : 0);
+    }
+}
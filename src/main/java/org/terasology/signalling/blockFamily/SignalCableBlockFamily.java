@@ -15,16 +15,12 @@
  */
 package org.terasology.signalling.blockFamily;
 
-import org.terasology.entitySystem.entity.EntityRef;
 import org.terasology.math.Rotation;
 import org.terasology.math.Side;
 import org.terasology.math.SideBitFlag;
 import org.terasology.math.geom.Vector3i;
 import org.terasology.registry.In;
 import org.terasology.signalling.componentSystem.SignalSystem;
-import org.terasology.signalling.components.CableComponent;
-import org.terasology.signalling.components.SignalLeafComponent;
-import org.terasology.world.BlockEntityRegistry;
 import org.terasology.world.block.Block;
 import org.terasology.world.block.BlockBuilderHelper;
 import org.terasology.world.block.BlockUri;
@@ -41,9 +37,7 @@ import org.terasology.world.block.shapes.BlockShape;
 @BlockSections({"no_connections", "one_connection", "line_connection", "2d_corner", "3d_corner", "2d_t", "cross", "3d_side", "five_connections", "all"})
 public class SignalCableBlockFamily extends MultiConnectFamily {
     @In
-    private BlockEntityRegistry blockEntityRegistry;
-    @In
-    private SignalSystem signalSystem;
+    protected SignalSystem signalSystem;
 
 
     public SignalCableBlockFamily(BlockFamilyDefinition definition, BlockShape shape, BlockBuilderHelper blockBuilder) {
@@ -80,32 +74,7 @@ public class SignalCableBlockFamily extends MultiConnectFamily {
 
     @Override
     public boolean connectionCondition(Vector3i blockLocation, Side connectSide) {
-        Vector3i neighborLocation = new Vector3i(blockLocation);
-        neighborLocation.add(connectSide.getVector3i());
-
-        EntityRef entityRef = blockEntityRegistry.getBlockEntityAt(neighborLocation);
-        if (entityRef == null)
-            return false;
-        if (entityRef.hasComponent(SignalLeafComponent.class)) {
-            SignalLeafComponent leafNodeComponent = entityRef.getComponent(SignalLeafComponent.class);
-
-            for (Side side : leafNodeComponent.inputs) {
-                if (signalSystem.getTransformedSide(entityRef,side)== connectSide.reverse()) {
-                    return true;
-                }
-            }
-
-            for (Side side : leafNodeComponent.outputs) {
-                if (signalSystem.getTransformedSide(entityRef,side)== connectSide.reverse()) {
-                    return true;
-                }
-            }
-        }
-        if (entityRef.hasComponent(CableComponent.class)) {
-            return true;
-        }
-        return false;
-
+        return signalSystem.connectsTo(blockLocation, connectSide);
     }
 
 }
\ No newline at end of file
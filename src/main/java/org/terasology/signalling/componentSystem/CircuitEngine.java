@@ -0,0 +1,676 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import gnu.trove.impl.Constants;
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import org.terasology.entitySystem.Component;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.math.Rotation;
+import org.terasology.math.Side;
+import org.terasology.signalling.components.SignalBusComponent;
+import org.terasology.signalling.components.SignalLeafComponent;
+import org.terasology.signalling.components.SignalStateComponent;
+import org.terasology.signalling.components.gates.AndGateComponent;
+import org.terasology.signalling.components.gates.NotGateComponent;
+import org.terasology.signalling.components.gates.OrGateComponent;
+import org.terasology.signalling.components.gates.XorGateComponent;
+import org.terasology.signalling.network.LeafDistances;
+import org.terasology.signalling.network.LongQueue;
+import org.terasology.signalling.network.SignalPositions;
+import org.terasology.world.block.BlockComponent;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Compiles stable gate networks into {@link CompiledCircuit}s and simulates them in place of the
+ * {@link org.terasology.signalling.event.LeafNodeSignalChange} events handled by
+ * {@link org.terasology.signalling.action.GateAction}.
+ * <p>
+ * A gate is compiled, together with every gate connected to it, when it needs evaluating and no signal block has been
+ * placed or removed for a while. A circuit is decompiled as soon as the topology around one of its gates changes: the
+ * outputs of its gates are written back to their {@link SignalStateComponent} and their pending outputs are handed back
+ * to the delay scheduler of {@link SignalSystem}.
+ * <p>
+ * Circuits never share gates, so they can be stepped concurrently (see {@link #setParallelism}); everything touching
+ * entities stays on the main thread.
+ */
+public class CircuitEngine implements CompiledCircuit.BoundaryListener {
+    /**
+     * The minimum number of circuits to step for the work to be spread over threads.
+     */
+    public static final int PARALLEL_THRESHOLD = 8;
+    private static final int CIRCUITS_PER_TASK = 4;
+
+    private final SignalSystem signalSystem;
+    private final TLongObjectMap<CompiledCircuit> circuits = new TLongObjectHashMap<>();
+    private final Set<CompiledCircuit> compiledCircuits = Sets.newLinkedHashSet();
+    private final CompiledCircuit.ExternalOutputs externalOutputs;
+    private boolean enabled;
+    private int parallelism = 1;
+    private ForkJoinPool pool;
+    private CompiledCircuit[] active = new CompiledCircuit[16];
+    /**
+     * The transitions of decompiled circuits, offset so that live circuits only count from the last reset.
+     */
+    private long emittedTransitions;
+    private long suppressedTransitions;
+    private long stableTime;
+    private long lastTopologyChange;
+
+    CircuitEngine(SignalSystem signalSystem, CompiledCircuit.ExternalOutputs externalOutputs) {
+        this.signalSystem = signalSystem;
+        this.externalOutputs = externalOutputs;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the engine. Disabling it decompiles every circuit.
+     */
+    public void setEnabled(boolean enabled, long time) {
+        this.enabled = enabled;
+        if (!enabled) {
+            decompileAll(time);
+        }
+    }
+
+    /**
+     * @param stableTime How long, in ms, the topology must stay unchanged before gates get compiled
+     */
+    public void setStableTime(long stableTime) {
+        this.stableTime = stableTime;
+    }
+
+    /**
+     * @return The number of compiled circuits
+     */
+    public int getCircuitCount() {
+        return compiledCircuits.size();
+    }
+
+    /**
+     * @return The number of gates in compiled circuits
+     */
+    public int getCompiledGateCount() {
+        return circuits.size();
+    }
+
+    /**
+     * Evaluates a leaf through its compiled circuit, compiling it first if possible.
+     *
+     * @param position The packed position of the leaf
+     * @param time     The current time, in ms
+     * @return Whether the leaf is handled by a circuit; if not, it should be notified through an event
+     */
+    boolean offer(long position, long time) {
+        CompiledCircuit circuit = circuits.get(position);
+        if (circuit == null) {
+            if (!enabled || time - lastTopologyChange < stableTime || getGateType(signalSystem.getEntityAt(position), position) < 0) {
+                return false;
+            }
+            circuit = compile(position, time);
+        }
+        circuit.markDirty(circuit.indexOf(position));
+        return true;
+    }
+
+    /**
+     * Records a change of topology at the given leaves, decompiling the circuits they belong to.
+     *
+     * @param leaves The packed positions of the leaves whose networks changed
+     * @param time   The current time, in ms
+     */
+    void topologyChanged(TLongIntMap leaves, long time) {
+        lastTopologyChange = time;
+        for (TLongIntIterator it = leaves.iterator(); it.hasNext(); ) {
+            it.advance();
+            CompiledCircuit circuit = circuits.get(it.key());
+            if (circuit != null) {
+                decompile(circuit, time);
+            }
+        }
+    }
+
+    /**
+     * Decompiles the circuit of a leaf whose block was replaced by another leaf with the same sides.
+     *
+     * @param location The packed position of the leaf
+     * @param time     The current time, in ms
+     */
+    void leafReplaced(long location, long time) {
+        lastTopologyChange = time;
+        CompiledCircuit circuit = circuits.get(location);
+        if (circuit != null) {
+            decompile(circuit, time);
+        }
+    }
+
+    /**
+     * Sets the number of threads stepping circuits. With more than one, the circuits with work to do are stepped on a
+     * fork-join pool once there are at least {@link #PARALLEL_THRESHOLD} of them.
+     *
+     * @param parallelism The number of threads, at least 1
+     */
+    public void setParallelism(int parallelism) {
+        parallelism = Math.max(1, parallelism);
+        if (pool != null && pool.getParallelism() != parallelism) {
+            shutdown();
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Advances every circuit. The external outputs are read and the boundary changes committed on the calling thread, in
+     * the order the circuits were compiled, so the result does not depend on how the steps themselves were scheduled.
+     *
+     * @param time The current time, in ms
+     */
+    void step(long time) {
+        int count = 0;
+        for (CompiledCircuit circuit : compiledCircuits) {
+            if (circuit.needsStep(time)) {
+                circuit.readExternals(externalOutputs);
+                if (count == active.length) {
+                    active = Arrays.copyOf(active, count * 2);
+                }
+                active[count++] = circuit;
+            }
+        }
+        if (count == 0) {
+            return;
+        }
+
+        if (parallelism > 1 && count >= PARALLEL_THRESHOLD) {
+            if (pool == null) {
+                pool = new ForkJoinPool(parallelism);
+            }
+            pool.invoke(new StepTask(active, 0, count, time));
+        } else {
+            for (int i = 0; i < count; i++) {
+                active[i].step(time);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            active[i].commit(this);
+            active[i] = null;
+        }
+    }
+
+    /**
+     * Stops the worker threads, if any. They are restarted on the next parallel step.
+     */
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    /**
+     * @return The number of output changes scheduled by compiled gates since the last reset
+     */
+    public long getEmittedTransitions() {
+        long total = emittedTransitions;
+        for (CompiledCircuit circuit : compiledCircuits) {
+            total += circuit.getEmittedTransitions();
+        }
+        return total;
+    }
+
+    /**
+     * @return The number of compiled gate evaluations that changed nothing since the last reset
+     */
+    public long getSuppressedTransitions() {
+        long total = suppressedTransitions;
+        for (CompiledCircuit circuit : compiledCircuits) {
+            total += circuit.getSuppressedTransitions();
+        }
+        return total;
+    }
+
+    public void resetTransitionCounters() {
+        emittedTransitions = 0;
+        suppressedTransitions = 0;
+        for (CompiledCircuit circuit : compiledCircuits) {
+            emittedTransitions -= circuit.getEmittedTransitions();
+            suppressedTransitions -= circuit.getSuppressedTransitions();
+        }
+    }
+
+    void decompileAll(long time) {
+        for (CompiledCircuit circuit : Lists.newArrayList(compiledCircuits)) {
+            decompile(circuit, time);
+        }
+    }
+
+    @Override
+    public void onBoundaryOutputChanged(CompiledCircuit circuit, int gate) {
+        writeOutputs(circuit, gate);
+        for (int r = circuit.receiverStart[gate]; r < circuit.receiverStart[gate + 1]; r++) {
+            if (circuit.receiverGates[r] < 0) {
+                signalSystem.markLeafDirty(circuit.receiverPositions[r]);
+            }
+        }
+    }
+
+    private void writeOutputs(CompiledCircuit circuit, int gate) {
+        EntityRef entity = circuit.entities[gate];
+        if (!entity.exists()) {
+            return;
+        }
+        SignalLeafComponent signalLeafComponent = entity.getComponent(SignalLeafComponent.class);
+        BlockComponent blockComponent = entity.getComponent(BlockComponent.class);
+        SignalStateComponent signalStateComponent = entity.getComponent(SignalStateComponent.class);
+        if (signalLeafComponent == null || blockComponent == null)
+            return;
+        if (signalSystem.isStateArenaEnabled()) {
+            for (Side side : signalLeafComponent.outputs) {
+                Side worldSide = blockComponent.getBlock().getRotation().rotate(side);
+                int index = SignalSystem.getOutputIndex(worldSide.ordinal());
+                if (signalSystem.setArenaOutput(entity, circuit.positions[gate], index, circuit.outputs[gate]))
+                    signalSystem.outputChanged(circuit.positions[gate], worldSide, circuit.outputs[gate]);
+            }
+            return;
+        }
+        if (signalStateComponent == null)
+            signalStateComponent = new SignalStateComponent();
+        boolean changed = false;
+        for (Side side : signalLeafComponent.outputs) {
+            Side worldSide = blockComponent.getBlock().getRotation().rotate(side);
+            int index = SignalSystem.getOutputIndex(worldSide.ordinal());
+            if (signalStateComponent.outputs[index] != circuit.outputs[gate]) {
+                signalStateComponent.outputs[index] = circuit.outputs[gate];
+                signalSystem.outputChanged(circuit.positions[gate], worldSide, circuit.outputs[gate]);
+                changed = true;
+            }
+        }
+        if (changed)
+            entity.addOrSaveComponent(signalStateComponent);
+    }
+
+    private void decompile(CompiledCircuit circuit, long time) {
+        compiledCircuits.remove(circuit);
+        emittedTransitions += circuit.getEmittedTransitions();
+        suppressedTransitions += circuit.getSuppressedTransitions();
+        for (int gate = 0; gate < circuit.gateCount; gate++) {
+            circuits.remove(circuit.positions[gate]);
+            writeOutputs(circuit, gate);
+            signalSystem.forceLeafEvaluation(circuit.positions[gate]);
+            if (circuit.pendingTimes[gate] != CompiledCircuit.NO_PENDING && circuit.entities[gate].exists()) {
+                SignalLeafComponent signalLeafComponent = circuit.entities[gate].getComponent(SignalLeafComponent.class);
+                if (signalLeafComponent == null)
+                    continue;
+                for (Side side : signalLeafComponent.outputs) {
+                    signalSystem.setLeafOutput(circuit.entities[gate], side, circuit.pendingOutputs[gate], Math.max(0, circuit.pendingTimes[gate] - time));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The compiled gate type of a leaf, or -1 if it cannot be compiled: it is not a built-in gate, or the handler
+     * registered for it is not the built-in one
+     */
+    private int getGateType(EntityRef entity, long position) {
+        if (!entity.hasComponent(SignalLeafComponent.class) || !entity.hasComponent(BlockComponent.class))
+            return -1;
+        // Compiled gates only carry single signals.
+        if (entity.hasComponent(SignalBusComponent.class))
+            return -1;
+        GateSignalChangeHandler handler = signalSystem.getGateHandler(entity, position);
+        if (!(handler instanceof CompilableGateHandler))
+            return -1;
+        Class<? extends Component> gateType = ((CompilableGateHandler) handler).getGateType();
+        if (gateType == AndGateComponent.class)
+            return CompiledCircuit.AND;
+        if (gateType == OrGateComponent.class)
+            return CompiledCircuit.OR;
+        if (gateType == XorGateComponent.class)
+            return CompiledCircuit.XOR;
+        if (gateType == NotGateComponent.class)
+            return CompiledCircuit.NOT;
+        return -1;
+    }
+
+    private CompiledCircuit compile(long seed, long time) {
+        // Find every gate connected to the seed, through its inputs and outputs.
+        TLongIntMap indices = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, -1);
+        List<EntityRef> entities = Lists.newArrayList();
+        LongQueue gates = new LongQueue();
+        indices.put(seed, 0);
+        entities.add(signalSystem.getEntityAt(seed));
+        gates.add(seed);
+        LongQueue neighbors = new LongQueue();
+        for (int i = 0; i < gates.size(); i++) {
+            EntityRef entity = entities.get(i);
+            neighbors.clear();
+            collectDrivers(gates.get(i), entity, neighbors);
+            collectReceivers(gates.get(i), entity, neighbors);
+            for (int n = 0; n < neighbors.size(); n++) {
+                long neighbor = neighbors.get(n);
+                if (indices.containsKey(neighbor))
+                    continue;
+                EntityRef neighborEntity = signalSystem.getEntityAt(neighbor);
+                if (getGateType(neighborEntity, neighbor) >= 0) {
+                    indices.put(neighbor, gates.size());
+                    entities.add(neighborEntity);
+                    gates.add(neighbor);
+                }
+            }
+        }
+
+        int gateCount = gates.size();
+        long[] positions = new long[gateCount];
+        byte[] types = new byte[gateCount];
+        byte[] strengths = new byte[gateCount];
+        long[] delays = new long[gateCount];
+        int[] connectedInputs = new int[gateCount];
+        int[] sideStart = new int[gateCount + 1];
+        IntList driverStart = new IntList();
+        IntList driverGates = new IntList();
+        IntList driverDistances = new IntList();
+        LongQueue externalPositions = new LongQueue();
+        IntList externalSides = new IntList();
+        TLongIntMap externalIndices = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, -1);
+        int[] receiverStart = new int[gateCount + 1];
+        IntList receiverGates = new IntList();
+        LongQueue receiverPositions = new LongQueue();
+
+        LongQueue found = new LongQueue();
+        IntList foundSides = new IntList();
+        IntList foundDistances = new IntList();
+        for (int gate = 0; gate < gateCount; gate++) {
+            long position = gates.get(gate);
+            EntityRef entity = entities.get(gate);
+            positions[gate] = position;
+            types[gate] = (byte) getGateType(entity, position);
+            readGateSettings(entity, gate, strengths, delays);
+            SignalLeafComponent signalLeafComponent = entity.getComponent(SignalLeafComponent.class);
+            connectedInputs[gate] = signalSystem.getConnectedInputCount(entity);
+
+            sideStart[gate] = driverStart.size();
+            Rotation rotation = entity.getComponent(BlockComponent.class).getBlock().getRotation();
+            for (Side side : signalLeafComponent.inputs) {
+                driverStart.add(driverGates.size());
+                found.clear();
+                foundSides.clear();
+                foundDistances.clear();
+                collectSide(position, rotation.rotate(side), found, foundSides, foundDistances, Integer.MAX_VALUE);
+                for (int f = 0; f < found.size(); f++) {
+                    long driver = found.get(f);
+                    int driverIndex = indices.get(driver);
+                    if (driverIndex < 0) {
+                        long key = driver * 8 + foundSides.get(f);
+                        driverIndex = externalIndices.get(key);
+                        if (driverIndex < 0) {
+                            driverIndex = externalPositions.size();
+                            externalIndices.put(key, driverIndex);
+                            externalPositions.add(driver);
+                            externalSides.add(foundSides.get(f));
+                        }
+                        driverIndex = -driverIndex - 1;
+                    } else if (!isOutput(entities.get(driverIndex), foundSides.get(f))) {
+                        continue;
+                    }
+                    driverGates.add(driverIndex);
+                    driverDistances.add(foundDistances.get(f));
+                }
+            }
+
+            receiverStart[gate] = receiverGates.size();
+            found.clear();
+            collectReceivers(position, entity, found);
+            for (int f = 0; f < found.size(); f++) {
+                receiverGates.add(indices.get(found.get(f)));
+                receiverPositions.add(found.get(f));
+            }
+        }
+        sideStart[gateCount] = driverStart.size();
+        driverStart.add(driverGates.size());
+        receiverStart[gateCount] = receiverGates.size();
+
+        long[] externalPositionArray = new long[externalPositions.size()];
+        for (int i = 0; i < externalPositionArray.length; i++) {
+            externalPositionArray[i] = externalPositions.get(i);
+        }
+        long[] receiverPositionArray = new long[receiverPositions.size()];
+        for (int i = 0; i < receiverPositionArray.length; i++) {
+            receiverPositionArray[i] = receiverPositions.get(i);
+        }
+
+        CompiledCircuit circuit = new CompiledCircuit(positions, entities.toArray(new EntityRef[gateCount]), types, strengths, delays,
+                connectedInputs, sideStart, driverStart.toArray(), driverGates.toArray(), driverDistances.toArray(),
+                externalPositionArray, externalSides.toArray(), receiverStart, receiverGates.toArray(), receiverPositionArray);
+        importState(circuit, time);
+        compiledCircuits.add(circuit);
+        for (int gate = 0; gate < gateCount; gate++) {
+            circuits.put(positions[gate], circuit);
+        }
+        return circuit;
+    }
+
+    /**
+     * Takes over the current outputs of the gates, and their pending outputs from the delay scheduler. A compiled gate
+     * has a single output, set on every output side of the block: it takes the strongest of the current outputs, and
+     * the latest of the pending ones, which is the output the gate settles on.
+     */
+    private void importState(CompiledCircuit circuit, long time) {
+        SignalTimingWheel delays = signalSystem.getDelays();
+        for (int gate = 0; gate < circuit.gateCount; gate++) {
+            EntityRef entity = circuit.entities[gate];
+            SignalLeafComponent signalLeafComponent = entity.getComponent(SignalLeafComponent.class);
+            int output = 0;
+            SignalSystem.SignalDelayHandler latest = null;
+            for (Side side : signalLeafComponent.outputs) {
+                output = strongest(output, signalSystem.getLeafOutput(entity, side));
+                SignalSystem.SignalDelayHandler probe = new SignalSystem.SignalDelayHandler(0, time, entity, (byte) 0, side);
+                SignalSystem.SignalDelayHandler pending = delays.getPending(probe);
+                if (pending != null) {
+                    delays.cancel(probe);
+                    if (latest == null || pending.getTime() >= latest.getTime())
+                        latest = pending;
+                }
+            }
+            circuit.outputs[gate] = (byte) output;
+            if (latest != null)
+                circuit.setPending(gate, latest.strength, latest.getTime());
+            circuit.markDirty(gate);
+        }
+    }
+
+    /**
+     * @return The stronger of two signal strengths, where -1 is an infinite signal
+     */
+    private static int strongest(int first, int second) {
+        if (first == -1 || second == -1)
+            return -1;
+        return Math.max(first, second);
+    }
+
+    private static void readGateSettings(EntityRef entity, int gate, byte[] strengths, long[] delays) {
+        AndGateComponent and = entity.getComponent(AndGateComponent.class);
+        if (and != null) {
+            strengths[gate] = and.strength;
+            delays[gate] = and.delay;
+            return;
+        }
+        OrGateComponent or = entity.getComponent(OrGateComponent.class);
+        if (or != null) {
+            strengths[gate] = or.strength;
+            delays[gate] = or.delay;
+            return;
+        }
+        XorGateComponent xor = entity.getComponent(XorGateComponent.class);
+        if (xor != null) {
+            strengths[gate] = xor.strength;
+            delays[gate] = xor.delay;
+            return;
+        }
+        NotGateComponent not = entity.getComponent(NotGateComponent.class);
+        if (not != null) {
+            strengths[gate] = not.strength;
+            delays[gate] = not.delay;
+        }
+    }
+
+    private static boolean isOutput(EntityRef entity, int worldSide) {
+        SignalLeafComponent signalLeafComponent = entity.getComponent(SignalLeafComponent.class);
+        Rotation rotation = entity.getComponent(BlockComponent.class).getBlock().getRotation();
+        for (Side side : signalLeafComponent.outputs) {
+            if (rotation.rotate(side).ordinal() == worldSide)
+                return true;
+        }
+        return false;
+    }
+
+    private void collectDrivers(long position, EntityRef entity, LongQueue result) {
+        SignalLeafComponent signalLeafComponent = entity.getComponent(SignalLeafComponent.class);
+        Rotation rotation = entity.getComponent(BlockComponent.class).getBlock().getRotation();
+        for (Side side : signalLeafComponent.inputs) {
+            collectSide(position, rotation.rotate(side), result, null, null, Integer.MAX_VALUE);
+        }
+    }
+
+    private void collectReceivers(long position, EntityRef entity, LongQueue result) {
+        SignalLeafComponent signalLeafComponent = entity.getComponent(SignalLeafComponent.class);
+        Rotation rotation = entity.getComponent(BlockComponent.class).getBlock().getRotation();
+        int strength = 0;
+        for (Side side : signalLeafComponent.outputs) {
+            strength = Math.max(strength, signalSystem.getLeafOutput(entity, side));
+        }
+        byte[] settings = new byte[1];
+        readGateSettings(entity, 0, settings, new long[1]);
+        int distanceCap = settings[0] < 0 ? Integer.MAX_VALUE : Math.max(strength, settings[0]);
+
+        TLongIntMap seen = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, -1);
+        LongQueue found = new LongQueue();
+        for (Side side : signalLeafComponent.outputs) {
+            found.clear();
+            collectSide(position, rotation.rotate(side), found, null, null, distanceCap);
+            for (int f = 0; f < found.size(); f++) {
+                if (seen.put(found.get(f), 1) < 0) {
+                    result.add(found.get(f));
+                }
+            }
+        }
+    }
+
+    /**
+     * Collects the leaves connected to a world-space side of a position, with the side they are reached on and their
+     * distance. The sides and distances are left out when their lists are null.
+     */
+    private void collectSide(long position, Side side, LongQueue leaves, IntList sides, IntList distances, int distanceCap) {
+        long start = SignalPositions.neighbor(position, side);
+        if (signalSystem.getEntityAt(start).hasComponent(SignalLeafComponent.class)) {
+            leaves.add(start);
+            if (sides != null)
+                sides.add(side.reverse().ordinal());
+            if (distances != null)
+                distances.add(0);
+            return;
+        }
+        LeafDistances found = signalSystem.getLeafDistances(start);
+        for (int i = 0; i < found.size(); i++) {
+            if (found.getDistance(i) > distanceCap)
+                break;
+            if (found.getPosition(i) == position)
+                continue;
+            leaves.add(found.getPosition(i));
+            if (sides != null)
+                sides.add(found.getSide(i));
+            if (distances != null)
+                distances.add(found.getDistance(i));
+        }
+    }
+
+    /**
+     * Steps a range of circuits, splitting it in halves until it is small enough.
+     */
+    private static final class StepTask extends RecursiveAction {
+        private final CompiledCircuit[] circuits;
+        private final int from;
+        private final int to;
+        private final long time;
+
+        StepTask(CompiledCircuit[] circuits, int from, int to, long time) {
+            this.circuits = circuits;
+            this.from = from;
+            this.to = to;
+            this.time = time;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CIRCUITS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    circuits[i].step(time);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new StepTask(circuits, from, middle, time), new StepTask(circuits, middle, to, time));
+            }
+        }
+    }
+
+    /**
+     * A minimal growable list of ints used while compiling.
+     */
+    private static final class IntList {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import org.terasology.entitySystem.Component;
+
+/**
+ * A gate handler evaluating one of the built-in AND, OR, XOR and NOT gates the way a {@link CompiledCircuit} does, so
+ * that the {@link CircuitEngine} may compile its gates. Gates whose registered handler is any other one are always left
+ * to their handler.
+ */
+public interface CompilableGateHandler extends GateSignalChangeHandler {
+    /**
+     * @return The component of the gates the handler evaluates
+     */
+    Class<? extends Component> getGateType();
+}
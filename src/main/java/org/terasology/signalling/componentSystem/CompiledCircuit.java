@@ -0,0 +1,332 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import org.terasology.entitySystem.entity.EntityRef;
+
+import java.util.Arrays;
+
+/**
+ * A gate network flattened into a struct-of-arrays netlist, simulated without entity events.
+ * <p>
+ * Every gate has a type, a strength, a delay and a logical output shared by all its output sides. Its input sides list
+ * the outputs driving them: other gates of the circuit, read from the output array, or external leaves (switches,
+ * gates of other circuits...), read from the world. Gates whose outputs reach leaves outside the circuit are boundary
+ * gates: their output changes are reported to a {@link BoundaryListener}, the others only exist in the arrays until the
+ * circuit is decompiled.
+ * <p>
+ * A step is split in three phases so that circuits can be stepped concurrently: {@link #readExternals} and
+ * {@link #commit} touch the world and must run on the main thread, while {@link #step} only touches the arrays of this
+ * circuit.
+ */
+public class CompiledCircuit {
+    public static final byte AND = 0;
+    public static final byte OR = 1;
+    public static final byte XOR = 2;
+    public static final byte NOT = 3;
+
+    static final long NO_PENDING = Long.MIN_VALUE;
+
+    final int gateCount;
+    final long[] positions;
+    final EntityRef[] entities;
+    final byte[] types;
+    final byte[] strengths;
+    final long[] delays;
+    final int[] connectedInputs;
+
+    /**
+     * Gate g owns the input sides [sideStart[g], sideStart[g + 1]).
+     */
+    final int[] sideStart;
+    /**
+     * Input side s is driven by the drivers [driverStart[s], driverStart[s + 1]).
+     */
+    final int[] driverStart;
+    /**
+     * The index of the driving gate, or -(external index + 1) for an external driver.
+     */
+    final int[] driverGates;
+    final int[] driverDistances;
+    final long[] externalPositions;
+    final int[] externalSides;
+
+    /**
+     * Gate g notifies the receivers [receiverStart[g], receiverStart[g + 1]).
+     */
+    final int[] receiverStart;
+    /**
+     * The index of the receiving gate, or -1 for a receiver outside the circuit.
+     */
+    final int[] receiverGates;
+    final long[] receiverPositions;
+    final boolean[] boundary;
+
+    final byte[] outputs;
+    final byte[] pendingOutputs;
+    final long[] pendingTimes;
+    final int[] externalValues;
+
+    private final TLongIntMap indices;
+    private final boolean[] dirty;
+    private final int[] dirtyGates;
+    private int dirtyCount;
+    private int pendingCount;
+    private long nextDueTime = Long.MAX_VALUE;
+    private final int[] changedBoundaryGates;
+    private int changedBoundaryCount;
+    private long emittedTransitions;
+    private long suppressedTransitions;
+
+    CompiledCircuit(long[] positions, EntityRef[] entities, byte[] types, byte[] strengths, long[] delays, int[] connectedInputs,
+                    int[] sideStart, int[] driverStart, int[] driverGates, int[] driverDistances, long[] externalPositions,
+                    int[] externalSides, int[] receiverStart, int[] receiverGates, long[] receiverPositions) {
+        this.gateCount = positions.length;
+        this.positions = positions;
+        this.entities = entities;
+        this.types = types;
+        this.strengths = strengths;
+        this.delays = delays;
+        this.connectedInputs = connectedInputs;
+        this.sideStart = sideStart;
+        this.driverStart = driverStart;
+        this.driverGates = driverGates;
+        this.driverDistances = driverDistances;
+        this.externalPositions = externalPositions;
+        this.externalSides = externalSides;
+        this.receiverStart = receiverStart;
+        this.receiverGates = receiverGates;
+        this.receiverPositions = receiverPositions;
+
+        boundary = new boolean[gateCount];
+        for (int gate = 0; gate < gateCount; gate++) {
+            for (int r = receiverStart[gate]; r < receiverStart[gate + 1]; r++) {
+                if (receiverGates[r] < 0) {
+                    boundary[gate] = true;
+                }
+            }
+        }
+        outputs = new byte[gateCount];
+        pendingOutputs = new byte[gateCount];
+        pendingTimes = new long[gateCount];
+        Arrays.fill(pendingTimes, NO_PENDING);
+        externalValues = new int[externalPositions.length];
+        changedBoundaryGates = new int[gateCount];
+        dirty = new boolean[gateCount];
+        dirtyGates = new int[gateCount];
+        indices = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, -1);
+        for (int gate = 0; gate < gateCount; gate++) {
+            indices.put(positions[gate], gate);
+        }
+    }
+
+    /**
+     * @return The number of gates of the circuit
+     */
+    public int getGateCount() {
+        return gateCount;
+    }
+
+    /**
+     * @param position The packed position of a leaf
+     * @return The index of the gate at the position, or -1 if it is not part of the circuit
+     */
+    public int indexOf(long position) {
+        return indices.get(position);
+    }
+
+    /**
+     * Marks a gate for evaluation on the next step.
+     */
+    public void markDirty(int gate) {
+        if (!dirty[gate]) {
+            dirty[gate] = true;
+            dirtyGates[dirtyCount++] = gate;
+        }
+    }
+
+    void setPending(int gate, byte value, long time) {
+        if (pendingTimes[gate] == NO_PENDING) {
+            pendingCount++;
+        }
+        pendingOutputs[gate] = value;
+        pendingTimes[gate] = time;
+        nextDueTime = Math.min(nextDueTime, time);
+    }
+
+    /**
+     * @param time The current time, in ms
+     * @return Whether a step at the given time would do anything
+     */
+    public boolean needsStep(long time) {
+        return dirtyCount > 0 || (pendingCount > 0 && nextDueTime < time);
+    }
+
+    /**
+     * Snapshots the outputs of the external drivers for the next step. Must be called on the main thread.
+     */
+    public void readExternals(ExternalOutputs externals) {
+        for (int i = 0; i < externalValues.length; i++) {
+            externalValues[i] = externals.getOutput(externalPositions[i], externalSides[i]);
+        }
+    }
+
+    /**
+     * Applies the outputs due before the given time, then evaluates the gates marked dirty against the external outputs
+     * snapshot by {@link #readExternals}. Only touches this circuit, so distinct circuits can be stepped concurrently.
+     *
+     * @param time The current time, in ms
+     */
+    public void step(long time) {
+        if (pendingCount > 0 && nextDueTime < time) {
+            long next = Long.MAX_VALUE;
+            for (int gate = 0; gate < gateCount; gate++) {
+                long pendingTime = pendingTimes[gate];
+                if (pendingTime == NO_PENDING) {
+                    continue;
+                }
+                if (pendingTime < time) {
+                    pendingTimes[gate] = NO_PENDING;
+                    pendingCount--;
+                    applyOutput(gate, pendingOutputs[gate]);
+                } else if (pendingTime < next) {
+                    next = pendingTime;
+                }
+            }
+            nextDueTime = next;
+        }
+
+        int count = dirtyCount;
+        dirtyCount = 0;
+        for (int i = 0; i < count; i++) {
+            int gate = dirtyGates[i];
+            dirty[gate] = false;
+            evaluate(gate, time);
+        }
+    }
+
+    /**
+     * Reports the boundary gates whose output changed during the last step. Must be called on the main thread.
+     */
+    public void commit(BoundaryListener listener) {
+        for (int i = 0; i < changedBoundaryCount; i++) {
+            listener.onBoundaryOutputChanged(this, changedBoundaryGates[i]);
+        }
+        changedBoundaryCount = 0;
+    }
+
+    private void applyOutput(int gate, byte value) {
+        if (outputs[gate] == value) {
+            return;
+        }
+        outputs[gate] = value;
+        for (int r = receiverStart[gate]; r < receiverStart[gate + 1]; r++) {
+            if (receiverGates[r] >= 0) {
+                markDirty(receiverGates[r]);
+            }
+        }
+        if (boundary[gate]) {
+            changedBoundaryGates[changedBoundaryCount++] = gate;
+        }
+    }
+
+    private void evaluate(int gate, long time) {
+        int activeInputs = 0;
+        for (int side = sideStart[gate]; side < sideStart[gate + 1]; side++) {
+            int strength = 0;
+            for (int d = driverStart[side]; d < driverStart[side + 1]; d++) {
+                int driver = driverGates[d];
+                int output = driver >= 0 ? outputs[driver] : externalValues[-driver - 1];
+                if (output == -1) {
+                    strength = -1;
+                    break;
+                }
+                int delta = output - driverDistances[d];
+                if (delta > strength) {
+                    strength = delta;
+                }
+            }
+            if (strength != 0) {
+                activeInputs++;
+            }
+        }
+
+        boolean high;
+        switch (types[gate]) {
+            case AND:
+                high = activeInputs == connectedInputs[gate] && activeInputs != 0;
+                break;
+            case OR:
+                high = activeInputs > 0;
+                break;
+            case XOR:
+                high = activeInputs % 2 == 1;
+                break;
+            default:
+                high = activeInputs == 0;
+                break;
+        }
+        byte value = high ? strengths[gate] : 0;
+        if (pendingTimes[gate] != NO_PENDING && pendingOutputs[gate] == value) {
+            suppressedTransitions++;
+        } else if (value == outputs[gate]) {
+            if (pendingTimes[gate] != NO_PENDING) {
+                pendingTimes[gate] = NO_PENDING;
+                pendingCount--;
+            }
+            suppressedTransitions++;
+        } else {
+            setPending(gate, value, time + delays[gate]);
+            emittedTransitions++;
+        }
+    }
+
+    /**
+     * @return The number of output changes scheduled by the gates of this circuit
+     */
+    public long getEmittedTransitions() {
+        return emittedTransitions;
+    }
+
+    /**
+     * @return The number of gate evaluations that left the current or pending output as it was
+     */
+    public long getSuppressedTransitions() {
+        return suppressedTransitions;
+    }
+
+    /**
+     * Reads the outputs of leaves outside the circuit.
+     */
+    public interface ExternalOutputs {
+        /**
+         * @param position The packed position of the leaf
+         * @param side     The ordinal of the world-space output side
+         * @return The strength of the output
+         */
+        int getOutput(long position, int side);
+    }
+
+    /**
+     * Notified when the output of a boundary gate changes.
+     */
+    public interface BoundaryListener {
+        void onBoundaryOutputChanged(CompiledCircuit circuit, int gate);
+    }
+}
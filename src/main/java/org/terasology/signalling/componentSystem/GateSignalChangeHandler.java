@@ -16,9 +16,13 @@
 package org.terasology.signalling.componentSystem;
 
 import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.signalling.event.LeafNodeSignalChange;
 
 /**
  * A callback that is notified when an {@link EntityRef}'s state changes.
+ * <p>
+ * Handlers registered with {@link SignalSystem#registerGateHandler} are called directly by the signal propagation
+ * loop for the leaves having their component, instead of the leaves being sent a {@link LeafNodeSignalChange}.
  */
 public interface GateSignalChangeHandler {
     /**
@@ -28,6 +32,18 @@ public interface GateSignalChangeHandler {
      */
     void handleGateSignalChange(EntityRef entity);
 
+    /**
+     * Called when gate's incoming signal has been changed, with the inputs already resolved by the signal system. By
+     * default, calls {@link #handleGateSignalChange(EntityRef)}; if that notifies the leaf again through
+     * {@link SignalSystem#signalLeafChange}, the leaf is sent the {@link LeafNodeSignalChange} instead.
+     *
+     * @param entity The entity undergoing a gate signal change
+     * @param inputs The inputs of the gate
+     */
+    default void handleGateSignalChange(EntityRef entity, LeafNodeSignalChange inputs) {
+        handleGateSignalChange(entity);
+    }
+
     /**
      * Called when delayed trigger event is being called for this gate with the specified actionId.
      *
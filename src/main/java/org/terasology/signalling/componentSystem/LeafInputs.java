@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+/**
+ * Packs the six input strengths of a leaf into the low 48 bits of a long, one byte per side ordinal, so that the inputs
+ * last delivered to every leaf are kept without an array per leaf.
+ */
+final class LeafInputs {
+    /**
+     * Stands for inputs that were never delivered. No packed inputs have the sign bit set.
+     */
+    static final long NONE = Long.MIN_VALUE;
+    static final int ALL_SIDES = 0x3F;
+    private static final int SIDE_COUNT = 6;
+
+    private LeafInputs() {
+    }
+
+    static long pack(byte[] inputs) {
+        long packed = 0;
+        for (int side = 0; side < SIDE_COUNT; side++) {
+            packed |= (long) (inputs[side] & 0xFF) << (8 * side);
+        }
+        return packed;
+    }
+
+    static void unpack(long packed, byte[] inputs) {
+        for (int side = 0; side < SIDE_COUNT; side++) {
+            inputs[side] = (byte) (packed >>> (8 * side));
+        }
+    }
+
+    /**
+     * @return The mask of the side ordinals whose input differs, every side if the previous inputs are {@link #NONE}
+     */
+    static int changedSides(long previous, long current) {
+        if (previous == NONE) {
+            return ALL_SIDES;
+        }
+        long difference = previous ^ current;
+        int changed = 0;
+        for (int side = 0; side < SIDE_COUNT; side++) {
+            if ((difference & (0xFFL << (8 * side))) != 0) {
+                changed |= 1 << side;
+            }
+        }
+        return changed;
+    }
+}
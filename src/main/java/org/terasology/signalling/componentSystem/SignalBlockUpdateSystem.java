@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import com.google.common.collect.Maps;
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import org.terasology.entitySystem.systems.BaseComponentSystem;
+import org.terasology.entitySystem.systems.RegisterMode;
+import org.terasology.entitySystem.systems.RegisterSystem;
+import org.terasology.entitySystem.systems.UpdateSubscriberSystem;
+import org.terasology.math.geom.Vector3i;
+import org.terasology.registry.In;
+import org.terasology.registry.Share;
+import org.terasology.signalling.network.SignalPositions;
+import org.terasology.world.WorldProvider;
+import org.terasology.world.block.Block;
+
+import java.util.Map;
+
+/**
+ * Coalesces the visual block swaps of signal blocks (lamps turning on and off...) into one batch per tick.
+ * <p>
+ * Only the last block requested for a position during a tick is kept, and it is only written if it differs from the
+ * block already in the world, so a lamp notified several times per tick, or told to stay in its current state, costs no
+ * re-meshing, lighting or replication.
+ */
+@RegisterSystem(value = RegisterMode.AUTHORITY)
+@Share(value = SignalBlockUpdateSystem.class)
+public class SignalBlockUpdateSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
+    @In
+    private WorldProvider worldProvider;
+
+    private final TLongObjectMap<Block> pendingBlocks = new TLongObjectHashMap<>();
+    private final Map<Vector3i, Block> batch = Maps.newHashMap();
+    private long requestCount;
+    private long writeCount;
+
+    /**
+     * Requests a block to be placed at the end of the tick, replacing any earlier request for the same position.
+     *
+     * @param position The position of the block
+     * @param block    The block to place
+     */
+    public void requestBlock(Vector3i position, Block block) {
+        pendingBlocks.put(SignalPositions.pack(position), block);
+        requestCount++;
+    }
+
+    /**
+     * Places the requested blocks that differ from the ones in the world, in a single batch.
+     */
+    public void flush() {
+        if (pendingBlocks.isEmpty())
+            return;
+        for (TLongObjectIterator<Block> it = pendingBlocks.iterator(); it.hasNext(); ) {
+            it.advance();
+            Vector3i position = SignalPositions.unpack(it.key(), new Vector3i());
+            Block block = it.value();
+            if (worldProvider.isBlockRelevant(position) && worldProvider.getBlock(position) != block)
+                batch.put(position, block);
+        }
+        pendingBlocks.clear();
+        if (!batch.isEmpty()) {
+            writeCount += batch.size();
+            worldProvider.setBlocks(batch);
+            batch.clear();
+        }
+    }
+
+    @Override
+    public void update(float delta) {
+        flush();
+    }
+
+    /**
+     * @return The number of block swaps requested since the system started
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return The number of blocks actually written since the system started
+     */
+    public long getWriteCount() {
+        return writeCount;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import com.google.common.collect.Maps;
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.entitySystem.event.ReceiveEvent;
+import org.terasology.entitySystem.systems.BaseComponentSystem;
+import org.terasology.entitySystem.systems.RegisterMode;
+import org.terasology.entitySystem.systems.RegisterSystem;
+import org.terasology.math.Side;
+import org.terasology.math.geom.Vector3i;
+import org.terasology.network.ClientComponent;
+import org.terasology.registry.In;
+import org.terasology.registry.Share;
+import org.terasology.signalling.components.SignalReplicationComponent;
+import org.terasology.signalling.event.SignalDeltaEvent;
+import org.terasology.signalling.event.SignalStateEvent;
+import org.terasology.signalling.network.SignalNetwork;
+import org.terasology.signalling.network.SignalNetworkModel;
+import org.terasology.signalling.network.SignalNodeLookup;
+import org.terasology.signalling.network.SignalPositions;
+import org.terasology.signalling.network.SignalTopologyStore;
+import org.terasology.world.OnChangedBlock;
+import org.terasology.world.WorldProvider;
+import org.terasology.world.block.BlockComponent;
+
+import java.util.Map;
+
+/**
+ * Keeps the signal activity replicated by the server in {@link SignalDeltaEvent}s, so that clients can render active
+ * outputs and powered cables.
+ * <p>
+ * The client builds the cable networks itself from the blocks it knows about: the server only sends one cable of each
+ * network whose powered state changed, after a {@link SignalStateEvent} with the whole state when the client connects.
+ * Nothing is replicated unless the "replicateSignals" setting is on: this module does not render the replicated state
+ * itself, it is there for modules that do.
+ */
+@RegisterSystem(value = RegisterMode.CLIENT)
+@Share(value = SignalClientSystem.class)
+public class SignalClientSystem extends BaseComponentSystem {
+    @In
+    private WorldProvider worldProvider;
+
+    private final SignalTopologyStore topology = new SignalTopologyStore();
+    private final SignalNetworkModel networkModel = new SignalNetworkModel(new BlockNodeLookup(false));
+    private final SignalNetworkModel busModel = new SignalNetworkModel(new BlockNodeLookup(true));
+    /**
+     * The active world-space output sides of each leaf, by packed position.
+     */
+    private final TLongIntMap activeOutputs = new TLongIntHashMap();
+    /**
+     * One cable of each powered network, by packed position, with {@link SignalDelta#BUS} for bus networks. It outlives
+     * the networks, which are rebuilt after every block change.
+     */
+    private final TLongIntMap poweredCables = new TLongIntHashMap();
+    /**
+     * The powered networks of the current models, mapped to their cable in {@link #poweredCables}. Rebuilt from it
+     * after the models are cleared.
+     */
+    private final Map<SignalNetwork, Long> poweredNetworks = Maps.newIdentityHashMap();
+    private boolean poweredNetworksValid = true;
+    private final Vector3i scratch = new Vector3i();
+
+    @ReceiveEvent(components = {SignalReplicationComponent.class})
+    public void onSignalDelta(SignalDeltaEvent event, EntityRef entityRef) {
+        apply(SignalDelta.decode(event.getDelta()));
+    }
+
+    /**
+     * Replaces what is known of the signal activity with the state sent by the server on connection.
+     */
+    @ReceiveEvent(components = {ClientComponent.class})
+    public void onSignalState(SignalStateEvent event, EntityRef client) {
+        activeOutputs.clear();
+        poweredCables.clear();
+        poweredNetworks.clear();
+        apply(SignalDelta.decode(event.getState()));
+    }
+
+    private void apply(SignalDelta delta) {
+        for (TLongIntIterator it = delta.getLeaves().iterator(); it.hasNext(); ) {
+            it.advance();
+            long leaf = it.key();
+            int value = it.value();
+            int active = (activeOutputs.get(leaf) & ~SignalDelta.changedSides(value)) | SignalDelta.activeSides(value);
+            if (active != 0) {
+                activeOutputs.put(leaf, active);
+            } else {
+                activeOutputs.remove(leaf);
+            }
+        }
+
+        for (TLongIntIterator it = delta.getNetworks().iterator(); it.hasNext(); ) {
+            it.advance();
+            networkChanged(it.key(), it.value());
+        }
+    }
+
+    private void networkChanged(long cable, int flags) {
+        boolean bus = SignalDelta.isBus(flags);
+        SignalNetwork network = (bus ? busModel : networkModel).getNetwork(cable);
+        if (network == null) {
+            return;
+        }
+        // Forget the cable recorded for the same network, so that only the latest state is kept.
+        Long previous = getPoweredNetworks().remove(network);
+        if (previous != null) {
+            poweredCables.remove(previous);
+        }
+        if (SignalDelta.isPowered(flags)) {
+            poweredNetworks.put(network, cable);
+            poweredCables.put(cable, bus ? SignalDelta.BUS : 0);
+        }
+    }
+
+    /**
+     * @return The powered networks of the current models, rebuilt from {@link #poweredCables} if the models were
+     * cleared. Cables no longer in a network, and extra cables of the same network, are dropped.
+     */
+    private Map<SignalNetwork, Long> getPoweredNetworks() {
+        if (poweredNetworksValid) {
+            return poweredNetworks;
+        }
+        poweredNetworks.clear();
+        for (TLongIntIterator it = poweredCables.iterator(); it.hasNext(); ) {
+            it.advance();
+            SignalNetwork network = (SignalDelta.isBus(it.value()) ? busModel : networkModel).getNetwork(it.key());
+            if (network == null || poweredNetworks.containsKey(network)) {
+                it.remove();
+            } else {
+                poweredNetworks.put(network, it.key());
+            }
+        }
+        poweredNetworksValid = true;
+        return poweredNetworks;
+    }
+
+    /**
+     * Rebuilds the networks lazily once a signal block is placed or removed.
+     */
+    @ReceiveEvent(components = {BlockComponent.class})
+    public void onBlockChanged(OnChangedBlock event, EntityRef entityRef) {
+        if (SignalTopologyStore.type(SignalSystem.readBlockNode(event.getOldType())) == SignalTopologyStore.NONE
+                && SignalTopologyStore.type(SignalSystem.readBlockNode(event.getNewType())) == SignalTopologyStore.NONE) {
+            return;
+        }
+        long location = SignalPositions.pack(event.getBlockPosition());
+        topology.invalidate(location);
+        activeOutputs.remove(location);
+        poweredCables.remove(location);
+        networkModel.clear();
+        busModel.clear();
+        poweredNetworksValid = false;
+    }
+
+    /**
+     * @param location  The location of a leaf
+     * @param worldSide A world-space output side of the leaf
+     * @return Whether the server last reported a signal on that output
+     */
+    public boolean isOutputActive(Vector3i location, Side worldSide) {
+        return SignalPositions.hasSide(activeOutputs.get(SignalPositions.pack(location)), worldSide.ordinal());
+    }
+
+    /**
+     * @param location The location of a cable or bus cable
+     * @return Whether a leaf outputs a signal into the network of the cable
+     */
+    public boolean isCablePowered(Vector3i location) {
+        long cable = SignalPositions.pack(location);
+        int type = SignalTopologyStore.type(getNode(cable));
+        if (type != SignalTopologyStore.CABLE && type != SignalTopologyStore.BUS_CABLE) {
+            return false;
+        }
+        SignalNetwork network = (type == SignalTopologyStore.BUS_CABLE ? busModel : networkModel).getNetwork(cable);
+        return network != null && getPoweredNetworks().containsKey(network);
+    }
+
+    private int getNode(long position) {
+        int node = topology.get(position);
+        if (node == SignalTopologyStore.UNKNOWN) {
+            node = SignalSystem.readBlockNode(worldProvider.getBlock(SignalPositions.unpack(position, scratch)));
+            topology.put(position, node);
+        }
+        return node;
+    }
+
+    /**
+     * Reads the networks from the blocks known to the client. Output strengths are not replicated: an active output
+     * counts as a signal of strength 1.
+     */
+    private class BlockNodeLookup implements SignalNodeLookup {
+        private final boolean bus;
+
+        BlockNodeLookup(boolean bus) {
+            this.bus = bus;
+        }
+
+        @Override
+        public boolean isCable(Vector3i position) {
+            return SignalTopologyStore.type(getNode(SignalPositions.pack(position))) == (bus ? SignalTopologyStore.BUS_CABLE : SignalTopologyStore.CABLE);
+        }
+
+        @Override
+        public boolean isLeaf(Vector3i position) {
+            return SignalTopologyStore.type(getNode(SignalPositions.pack(position))) == SignalTopologyStore.LEAF;
+        }
+
+        @Override
+        public int getLeafSides(Vector3i position) {
+            int node = getNode(SignalPositions.pack(position));
+            if (SignalTopologyStore.type(node) != SignalTopologyStore.LEAF) {
+                return 0;
+            }
+            return bus ? SignalTopologyStore.busSides(node) : SignalTopologyStore.sides(node);
+        }
+
+        @Override
+        public int getLeafOutput(Vector3i position, int side) {
+            return SignalPositions.hasSide(activeOutputs.get(SignalPositions.pack(position)), side) ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import org.terasology.entitySystem.systems.BaseComponentSystem;
+import org.terasology.entitySystem.systems.RegisterMode;
+import org.terasology.entitySystem.systems.RegisterSystem;
+import org.terasology.logic.console.commandSystem.annotations.Command;
+import org.terasology.logic.console.commandSystem.annotations.CommandParam;
+import org.terasology.logic.permission.PermissionManager;
+import org.terasology.registry.In;
+
+@RegisterSystem(RegisterMode.AUTHORITY)
+public class SignalCommands extends BaseComponentSystem {
+    private static final int DEFAULT_NETWORK_COUNT = 5;
+
+    @In
+    private SignalSystem signalSystem;
+
+    @Command(shortDescription = "Shows the load of the signal system",
+            helpText = "Lists per-tick counters, update and leaf input resolution latencies, and the cable networks whose walks cost the most",
+            runOnServer = true, requiredPermission = PermissionManager.DEBUG_PERMISSION)
+    public String signalStats(@CommandParam(value = "networks", required = false) Integer networks) {
+        return signalSystem.getMetricsReport(networks != null ? networks : DEFAULT_NETWORK_COUNT);
+    }
+
+    @Command(shortDescription = "Resets the signal system metrics", runOnServer = true, requiredPermission = PermissionManager.DEBUG_PERMISSION)
+    public String signalStatsReset() {
+        signalSystem.getMetrics().reset();
+        signalSystem.resetInputCacheCounters();
+        signalSystem.resetTransitionCounters();
+        return "Signal metrics reset";
+    }
+}
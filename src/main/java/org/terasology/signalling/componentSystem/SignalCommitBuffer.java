@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import com.google.common.collect.Lists;
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.math.Side;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Output changes held back to be applied together: those requested during a fixed signal tick, applied once every leaf
+ * of the tick has been evaluated, or those throttled by the {@link SignalRateLimiter}, carried over to the next tick.
+ * Leaves are identified by their packed position, and a later request for the same output replaces an earlier one.
+ * <p>
+ * The entries and the arrays used to sort them are reused from one commit to the next, so that a commit does not
+ * allocate once the buffer has grown to the number of leaves changing per tick.
+ */
+public class SignalCommitBuffer {
+    private static final Side[] SIDES = Side.values();
+
+    private final TLongObjectMap<Entry> entries = new TLongObjectHashMap<>();
+    private final List<Entry> freeEntries = Lists.newArrayList();
+    private long[] locations = new long[16];
+    private Entry[] staged = new Entry[16];
+
+    /**
+     * @param location The packed position of the leaf
+     * @param side     The (unrotated) output side
+     */
+    public void stageOutput(long location, EntityRef entityRef, Side side, byte strength) {
+        Entry entry = getEntry(location, entityRef);
+        entry.strengths[side.ordinal()] = strength;
+        entry.outputSides |= 1 << side.ordinal();
+    }
+
+    /**
+     * @param location The packed position of the leaf
+     * @param side     The (unrotated) bus output side
+     */
+    public void stageBusOutput(long location, EntityRef entityRef, Side side, int channels) {
+        Entry entry = getEntry(location, entityRef);
+        entry.channels[side.ordinal()] = channels;
+        entry.busSides |= 1 << side.ordinal();
+    }
+
+    /**
+     * Drops the staged change of an output, if there is one.
+     *
+     * @param location The packed position of the leaf
+     * @param side     The (unrotated) output side
+     */
+    public void cancelOutput(long location, Side side) {
+        Entry entry = entries.get(location);
+        if (entry != null) {
+            entry.outputSides &= ~(1 << side.ordinal());
+        }
+    }
+
+    private Entry getEntry(long location, EntityRef entityRef) {
+        Entry entry = entries.get(location);
+        if (entry == null) {
+            entry = freeEntries.isEmpty() ? new Entry() : freeEntries.remove(freeEntries.size() - 1);
+            entries.put(location, entry);
+        }
+        entry.entityRef = entityRef;
+        return entry;
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Empties the buffer, then hands the staged changes to the sink ordered by position and side, so that the result
+     * does not depend on the order the leaves were evaluated in. The sink may stage new changes, which wait for the
+     * next commit, but must not commit the buffer itself.
+     *
+     * @param sink Receives every staged change
+     */
+    public void commit(Sink sink) {
+        int count = entries.size();
+        if (count == 0) {
+            return;
+        }
+        if (locations.length < count) {
+            int capacity = Math.max(count, 2 * locations.length);
+            locations = new long[capacity];
+            staged = new Entry[capacity];
+        }
+        int index = 0;
+        for (TLongObjectIterator<Entry> it = entries.iterator(); it.hasNext(); ) {
+            it.advance();
+            locations[index++] = it.key();
+        }
+        Arrays.sort(locations, 0, count);
+        for (int i = 0; i < count; i++) {
+            staged[i] = entries.get(locations[i]);
+        }
+        entries.clear();
+
+        for (int i = 0; i < count; i++) {
+            Entry entry = staged[i];
+            for (Side side : SIDES) {
+                if ((entry.outputSides & (1 << side.ordinal())) != 0) {
+                    sink.output(entry.entityRef, side, entry.strengths[side.ordinal()]);
+                }
+            }
+            for (Side side : SIDES) {
+                if ((entry.busSides & (1 << side.ordinal())) != 0) {
+                    sink.busOutput(entry.entityRef, side, entry.channels[side.ordinal()]);
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            release(staged[i]);
+            staged[i] = null;
+        }
+    }
+
+    public void clear() {
+        for (Entry entry : entries.valueCollection()) {
+            release(entry);
+        }
+        entries.clear();
+    }
+
+    private void release(Entry entry) {
+        entry.entityRef = null;
+        entry.outputSides = 0;
+        entry.busSides = 0;
+        freeEntries.add(entry);
+    }
+
+    public interface Sink {
+        void output(EntityRef entityRef, Side side, byte strength);
+
+        void busOutput(EntityRef entityRef, Side side, int channels);
+    }
+
+    private static final class Entry {
+        private EntityRef entityRef;
+        private final byte[] strengths = new byte[SIDES.length];
+        private final int[] channels = new int[SIDES.length];
+        private int outputSides;
+        private int busSides;
+    }
+}
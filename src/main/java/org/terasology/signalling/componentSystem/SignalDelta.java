@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.util.Arrays;
+
+/**
+ * The signal activity that changed during a tick, as replicated to clients by a
+ * {@link org.terasology.signalling.event.SignalDeltaEvent}.
+ * <p>
+ * For leaves it holds, by packed position, a bitset of the world-space output sides that changed and a bitset of those
+ * now active. For networks it holds one cable of each network whose powered state changed, with that state. The encoded
+ * form sorts the positions and writes the differences between them as variable length integers, followed by the
+ * bitsets, so a busy tick costs a few bytes per changed leaf.
+ */
+public class SignalDelta {
+    public static final int POWERED = 1;
+    public static final int BUS = 2;
+    private static final int SIDE_MASK = 0x3F;
+    private static final int ACTIVE_SHIFT = 6;
+    /**
+     * The longest encoding of a variable length long.
+     */
+    private static final int MAX_VARINT_BYTES = 10;
+
+    private final TLongIntMap leaves = new TLongIntHashMap();
+    private final TLongIntMap networks = new TLongIntHashMap();
+
+    /**
+     * Records the new state of an output of a leaf. Later changes of the same side in a tick replace the earlier ones.
+     *
+     * @param leaf   The packed position of the leaf
+     * @param side   The ordinal of the world-space side
+     * @param active Whether the output now carries a signal
+     */
+    public void outputChanged(long leaf, int side, boolean active) {
+        int bit = 1 << side;
+        int value = leaves.get(leaf) | bit;
+        value = active ? value | (bit << ACTIVE_SHIFT) : value & ~(bit << ACTIVE_SHIFT);
+        leaves.put(leaf, value);
+    }
+
+    /**
+     * Records the powered state of a network.
+     *
+     * @param cable The packed position of a cable of the network
+     * @param flags {@link #POWERED} if a leaf outputs a signal into the network, and {@link #BUS} for bus networks
+     */
+    public void networkChanged(long cable, int flags) {
+        networks.put(cable, flags);
+    }
+
+    /**
+     * @return The changes of leaf outputs, by packed position. Read them with {@link #changedSides} and
+     * {@link #activeSides}.
+     */
+    public TLongIntMap getLeaves() {
+        return leaves;
+    }
+
+    /**
+     * @return The powered state of the changed networks, by the packed position of one of their cables. Read them
+     * with {@link #isPowered} and {@link #isBus}.
+     */
+    public TLongIntMap getNetworks() {
+        return networks;
+    }
+
+    public static int changedSides(int leafValue) {
+        return leafValue & SIDE_MASK;
+    }
+
+    public static int activeSides(int leafValue) {
+        return (leafValue >>> ACTIVE_SHIFT) & SIDE_MASK;
+    }
+
+    public static boolean isPowered(int networkFlags) {
+        return (networkFlags & POWERED) != 0;
+    }
+
+    public static boolean isBus(int networkFlags) {
+        return (networkFlags & BUS) != 0;
+    }
+
+    public boolean isEmpty() {
+        return leaves.isEmpty() && networks.isEmpty();
+    }
+
+    public void clear() {
+        leaves.clear();
+        networks.clear();
+    }
+
+    /**
+     * @return The compact encoding of the delta
+     */
+    public byte[] encode() {
+        long[] leafPositions = sortedKeys(leaves);
+        long[] networkPositions = sortedKeys(networks);
+        int bitsetBytes = (networkPositions.length + 7) / 8;
+        byte[] data = new byte[2 * MAX_VARINT_BYTES + leafPositions.length * (MAX_VARINT_BYTES + 2)
+                + networkPositions.length * MAX_VARINT_BYTES + 2 * bitsetBytes];
+        int offset = writeVarLong(data, 0, leafPositions.length);
+        long previous = 0;
+        for (long leaf : leafPositions) {
+            offset = writeVarLong(data, offset, zigZag(leaf - previous));
+            previous = leaf;
+            int value = leaves.get(leaf);
+            data[offset++] = (byte) changedSides(value);
+            data[offset++] = (byte) activeSides(value);
+        }
+
+        offset = writeVarLong(data, offset, networkPositions.length);
+        previous = 0;
+        for (long cable : networkPositions) {
+            offset = writeVarLong(data, offset, zigZag(cable - previous));
+            previous = cable;
+        }
+        for (int i = 0; i < networkPositions.length; i++) {
+            int flags = networks.get(networkPositions[i]);
+            if (isPowered(flags)) {
+                data[offset + i / 8] |= 1 << (i % 8);
+            }
+            if (isBus(flags)) {
+                data[offset + bitsetBytes + i / 8] |= 1 << (i % 8);
+            }
+        }
+        offset += 2 * bitsetBytes;
+        return Arrays.copyOf(data, offset);
+    }
+
+    /**
+     * @param data A delta encoded by {@link #encode}
+     * @return The decoded delta
+     * @throws IllegalArgumentException if the data is truncated
+     */
+    public static SignalDelta decode(byte[] data) {
+        SignalDelta delta = new SignalDelta();
+        try {
+            int[] offset = {0};
+            long leafCount = readVarLong(data, offset);
+            long previous = 0;
+            for (long i = 0; i < leafCount; i++) {
+                previous += unZigZag(readVarLong(data, offset));
+                int changed = data[offset[0]++] & SIDE_MASK;
+                int active = data[offset[0]++] & SIDE_MASK;
+                delta.leaves.put(previous, changed | (active << ACTIVE_SHIFT));
+            }
+
+            int networkCount = (int) readVarLong(data, offset);
+            long[] networkPositions = new long[networkCount];
+            previous = 0;
+            for (int i = 0; i < networkCount; i++) {
+                previous += unZigZag(readVarLong(data, offset));
+                networkPositions[i] = previous;
+            }
+            int bitsetBytes = (networkCount + 7) / 8;
+            for (int i = 0; i < networkCount; i++) {
+                int flags = 0;
+                if ((data[offset[0] + i / 8] & (1 << (i % 8))) != 0) {
+                    flags |= POWERED;
+                }
+                if ((data[offset[0] + bitsetBytes + i / 8] & (1 << (i % 8))) != 0) {
+                    flags |= BUS;
+                }
+                delta.networks.put(networkPositions[i], flags);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IllegalArgumentException("Truncated signal delta", e);
+        }
+        return delta;
+    }
+
+    private static long[] sortedKeys(TLongIntMap map) {
+        long[] keys = map.keys();
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarLong(byte[] data, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            data[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static long readVarLong(byte[] data, int[] offset) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte next = data[offset[0]++];
+            value |= (long) (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed signal delta");
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import org.terasology.signalling.network.NetworkCost;
+import org.terasology.signalling.network.SignalPositions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Counters and latency histograms describing the load of {@link SignalSystem}.
+ * <p>
+ * Counters are accumulated during a tick and rolled over by {@link #endTick}, which keeps the values of the last tick,
+ * of the current dump interval and since the last reset.
+ */
+public class SignalMetrics {
+    /**
+     * The columns of {@link #toCsvLine}.
+     */
+    public static final String CSV_HEADER = "time,ticks,signalTicks,droppedTicks,traversals,visitedCables,leavesEvaluated,unchangedLeaves,leafNotifications,delaysFired,"
+            + "lateDelays,throttledTransitions,frozenLeaves,suspendedLeaves,suspendedDelays,replicatedBytes,delayQueueDepth,propagationQueueDepth,updateP50Micros,updateP99Micros,updateMaxMicros";
+
+    public enum Counter {
+        SIGNAL_TICKS,
+        DROPPED_TICKS,
+        TRAVERSALS,
+        VISITED_CABLES,
+        LEAVES_EVALUATED,
+        UNCHANGED_LEAVES,
+        LEAF_NOTIFICATIONS,
+        DELAYS_FIRED,
+        LATE_DELAYS,
+        THROTTLED_TRANSITIONS,
+        FROZEN_LEAVES,
+        SUSPENDED_LEAVES,
+        SUSPENDED_DELAYS,
+        REPLICATED_BYTES
+    }
+
+    private static final int COUNTERS = Counter.values().length;
+
+    private final long[] current = new long[COUNTERS];
+    private final long[] lastTick = new long[COUNTERS];
+    private final long[] interval = new long[COUNTERS];
+    private final long[] total = new long[COUNTERS];
+    private final LatencyHistogram updateLatency = new LatencyHistogram();
+    private final LatencyHistogram intervalUpdateLatency = new LatencyHistogram();
+    private final LatencyHistogram inputResolutionLatency = new LatencyHistogram();
+    private long ticks;
+    private long intervalTicks;
+    private long lastTraversals;
+    private long lastVisitedCables;
+    private int delayQueueDepth;
+    private int propagationQueueDepth;
+
+    void increment(Counter counter) {
+        current[counter.ordinal()]++;
+    }
+
+    void add(Counter counter, long amount) {
+        current[counter.ordinal()] += amount;
+    }
+
+    void recordInputResolution(long nanos) {
+        inputResolutionLatency.record(nanos);
+    }
+
+    /**
+     * Rolls the counters of the tick over.
+     *
+     * @param updateNanos           The duration of the update, in ns
+     * @param traversals            The total number of network walks so far
+     * @param visitedCables         The total number of cables visited by them
+     * @param delayQueueDepth       The number of pending delayed outputs
+     * @param propagationQueueDepth The number of leaves waiting for evaluation
+     */
+    void endTick(long updateNanos, long traversals, long visitedCables, int delayQueueDepth, int propagationQueueDepth) {
+        current[Counter.TRAVERSALS.ordinal()] += traversals - lastTraversals;
+        current[Counter.VISITED_CABLES.ordinal()] += visitedCables - lastVisitedCables;
+        lastTraversals = traversals;
+        lastVisitedCables = visitedCables;
+        this.delayQueueDepth = delayQueueDepth;
+        this.propagationQueueDepth = propagationQueueDepth;
+        updateLatency.record(updateNanos);
+        intervalUpdateLatency.record(updateNanos);
+
+        for (int i = 0; i < COUNTERS; i++) {
+            lastTick[i] = current[i];
+            interval[i] += current[i];
+            total[i] += current[i];
+            current[i] = 0;
+        }
+        ticks++;
+        intervalTicks++;
+    }
+
+    /**
+     * @return The value of the counter during the last tick
+     */
+    public long getLastTick(Counter counter) {
+        return lastTick[counter.ordinal()];
+    }
+
+    /**
+     * @return The value of the counter since the last reset
+     */
+    public long getTotal(Counter counter) {
+        return total[counter.ordinal()];
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public int getDelayQueueDepth() {
+        return delayQueueDepth;
+    }
+
+    public int getPropagationQueueDepth() {
+        return propagationQueueDepth;
+    }
+
+    public LatencyHistogram getUpdateLatency() {
+        return updateLatency;
+    }
+
+    public LatencyHistogram getInputResolutionLatency() {
+        return inputResolutionLatency;
+    }
+
+    /**
+     * Formats the counters accumulated since the previous call as a CSV line (see {@link #CSV_HEADER}), then starts a
+     * new interval.
+     *
+     * @param time The current time, in ms
+     */
+    public String toCsvLine(long time) {
+        StringBuilder line = new StringBuilder();
+        line.append(time).append(',').append(intervalTicks);
+        for (int i = 0; i < COUNTERS; i++) {
+            line.append(',').append(interval[i]);
+        }
+        line.append(',').append(delayQueueDepth).append(',').append(propagationQueueDepth)
+                .append(',').append(intervalUpdateLatency.getPercentile(0.5) / 1000)
+                .append(',').append(intervalUpdateLatency.getPercentile(0.99) / 1000)
+                .append(',').append(intervalUpdateLatency.getMax() / 1000);
+        Arrays.fill(interval, 0);
+        intervalTicks = 0;
+        intervalUpdateLatency.reset();
+        return line.toString();
+    }
+
+    /**
+     * Formats a human readable report of the metrics.
+     *
+     * @param costliestNetworks The networks to list as the most expensive ones
+     */
+    public String report(List<NetworkCost> costliestNetworks) {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.ROOT, "Signal metrics over %d ticks (last tick / total):%n", ticks));
+        for (Counter counter : Counter.values()) {
+            report.append(String.format(Locale.ROOT, "  %-20s %10d / %d%n", counter.name().toLowerCase(Locale.ROOT),
+                    lastTick[counter.ordinal()], total[counter.ordinal()]));
+        }
+        report.append(String.format(Locale.ROOT, "  delay queue depth    %10d%n", delayQueueDepth));
+        report.append(String.format(Locale.ROOT, "  propagation queue    %10d%n", propagationQueueDepth));
+        report.append("  update: ").append(updateLatency).append(String.format("%n"));
+        report.append("  input resolution: ").append(inputResolutionLatency).append(String.format("%n"));
+        report.append("Costliest networks (cables visited by walks):");
+        for (NetworkCost cost : costliestNetworks) {
+            report.append(String.format(Locale.ROOT, "%n  (%d, %d, %d): %d cables, %d leaves, cost %d",
+                    SignalPositions.x(cost.getCable()), SignalPositions.y(cost.getCable()), SignalPositions.z(cost.getCable()),
+                    cost.getCableCount(), cost.getLeafCount(), cost.getTraversalCost()));
+        }
+        return report.toString();
+    }
+
+    /**
+     * Clears every counter and histogram.
+     */
+    public void reset() {
+        Arrays.fill(current, 0);
+        Arrays.fill(lastTick, 0);
+        Arrays.fill(interval, 0);
+        Arrays.fill(total, 0);
+        updateLatency.reset();
+        intervalUpdateLatency.reset();
+        inputResolutionLatency.reset();
+        ticks = 0;
+        intervalTicks = 0;
+    }
+
+    /**
+     * A histogram of durations in power-of-two buckets of nanoseconds, precise to a factor of two.
+     */
+    public static final class LatencyHistogram {
+        private final long[] buckets = new long[64];
+        private long count;
+        private long sum;
+        private long max;
+
+        void record(long nanos) {
+            nanos = Math.max(0, nanos);
+            buckets[64 - Long.numberOfLeadingZeros(nanos) - (nanos == 0 ? 0 : 1)]++;
+            count++;
+            sum += nanos;
+            max = Math.max(max, nanos);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public long getMean() {
+            return count == 0 ? 0 : sum / count;
+        }
+
+        /**
+         * @param fraction The fraction of samples, between 0 and 1
+         * @return The upper bound, in ns, of the bucket holding the given fraction of the samples
+         */
+        public long getPercentile(double fraction) {
+            long threshold = (long) Math.ceil(count * fraction);
+            long seen = 0;
+            for (int bucket = 0; bucket < buckets.length; bucket++) {
+                seen += buckets[bucket];
+                if (seen >= threshold && seen > 0) {
+                    return Math.min(max, bucket == 63 ? Long.MAX_VALUE : (1L << (bucket + 1)) - 1);
+                }
+            }
+            return 0;
+        }
+
+        void reset() {
+            Arrays.fill(buckets, 0);
+            count = 0;
+            sum = 0;
+            max = 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d calls, mean %d us, p50 %d us, p99 %d us, max %d us", count, getMean() / 1000,
+                    getPercentile(0.5) / 1000, getPercentile(0.99) / 1000, max / 1000);
+        }
+    }
+}
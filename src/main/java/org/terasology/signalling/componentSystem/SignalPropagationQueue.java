@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import org.terasology.signalling.network.LongQueue;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Collects the leaves whose inputs may have changed, so that they are evaluated once per tick instead of once per
+ * output change. Leaves are identified by their packed position.
+ * <p>
+ * Leaves are evaluated in waves: the leaves marked while a wave is evaluated form the next wave. A leaf is evaluated at
+ * most once per tick; if it is marked again after its evaluation, it waits for the next tick.
+ */
+public class SignalPropagationQueue {
+    private static final int PENDING = 1;
+    private static final int EVALUATED = 2;
+    private static final int DEFERRED = 3;
+
+    private LongQueue currentWave = new LongQueue();
+    private LongQueue nextWave = new LongQueue();
+    private final LongQueue deferred = new LongQueue();
+    private final LongQueue evaluated = new LongQueue();
+    private final TLongIntMap states = new TLongIntHashMap();
+    private boolean processing;
+
+    /**
+     * Marks a leaf as needing evaluation.
+     *
+     * @param leaf The packed position of the leaf
+     */
+    public void markDirty(long leaf) {
+        int state = states.get(leaf);
+        if (state == EVALUATED) {
+            states.put(leaf, DEFERRED);
+            deferred.add(leaf);
+        } else if (state == 0) {
+            states.put(leaf, PENDING);
+            if (processing) {
+                nextWave.add(leaf);
+            } else {
+                currentWave.add(leaf);
+            }
+        }
+    }
+
+    /**
+     * Evaluates the marked leaves, wave by wave, until none are left or the budget is spent. Leaves left over are
+     * evaluated first on the next call.
+     *
+     * @param budget    The maximum number of leaves to evaluate
+     * @param evaluator Called with the packed position of every evaluated leaf
+     * @return The number of leaves evaluated
+     */
+    public int process(int budget, LongConsumer evaluator) {
+        processing = true;
+        int evaluations = 0;
+        try {
+            while (evaluations < budget) {
+                if (currentWave.isEmpty()) {
+                    if (nextWave.isEmpty()) {
+                        break;
+                    }
+                    LongQueue swap = currentWave;
+                    currentWave = nextWave;
+                    nextWave = swap;
+                }
+                long leaf = currentWave.poll();
+                states.put(leaf, EVALUATED);
+                evaluated.add(leaf);
+                evaluator.accept(leaf);
+                evaluations++;
+            }
+        } finally {
+            processing = false;
+            while (!evaluated.isEmpty()) {
+                long leaf = evaluated.poll();
+                if (states.get(leaf) == EVALUATED) {
+                    states.remove(leaf);
+                }
+            }
+            while (!deferred.isEmpty()) {
+                long leaf = deferred.poll();
+                states.put(leaf, PENDING);
+                nextWave.add(leaf);
+            }
+        }
+        return evaluations;
+    }
+
+    /**
+     * @return The number of leaves waiting for evaluation
+     */
+    public int size() {
+        return currentWave.size() + nextWave.size();
+    }
+
+    /**
+     * Drops every pending leaf.
+     */
+    public void clear() {
+        currentWave.clear();
+        nextWave.clear();
+        deferred.clear();
+        evaluated.clear();
+        states.clear();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import org.terasology.signalling.network.LongQueue;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Limits how often the outputs of leaves change, so that feedback loops cannot take over the tick.
+ * <p>
+ * Every leaf may change its outputs a limited number of times per tick; further changes are deferred to the next tick.
+ * A leaf whose outputs change faster than a maximum frequency over a detection window is reported as oscillating, and
+ * can then be frozen for a while. As the limit is on changes per time rather than per tick, it does not depend on the
+ * frame rate. Leaves are identified by their packed position.
+ */
+public class SignalRateLimiter {
+    private final TLongIntMap tickTransitions = new TLongIntHashMap();
+    private final TLongIntMap windowTransitions = new TLongIntHashMap();
+    /**
+     * The frozen leaves, mapped to the window (counted from {@link #windowIndex}) their freeze ends with.
+     */
+    private final TLongIntMap frozenLeaves = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, -1);
+    private final LongQueue thawed = new LongQueue();
+    private final long window;
+    private int maxTransitionsPerTick;
+    private int maxWindowTransitions;
+    private long windowEnd = Long.MIN_VALUE;
+    private int windowIndex;
+
+    /**
+     * @param window                The length of the detection window, in ms
+     * @param maxTransitionsPerTick The number of output changes a leaf may make per tick
+     * @param maxFrequency          The frequency, in Hz, a leaf may switch its outputs on and off at before it is reported
+     */
+    public SignalRateLimiter(long window, int maxTransitionsPerTick, int maxFrequency) {
+        this.window = window;
+        this.maxTransitionsPerTick = maxTransitionsPerTick;
+        setMaxFrequency(maxFrequency);
+    }
+
+    public void setMaxTransitionsPerTick(int maxTransitionsPerTick) {
+        this.maxTransitionsPerTick = Math.max(1, maxTransitionsPerTick);
+    }
+
+    /**
+     * @param maxFrequency The frequency, in Hz, a leaf may switch its outputs on and off at before it is reported. An
+     *                     output switching at that frequency changes twice per period.
+     */
+    public void setMaxFrequency(int maxFrequency) {
+        this.maxWindowTransitions = (int) Math.max(1, 2 * Math.max(1, maxFrequency) * window / 1000);
+    }
+
+    /**
+     * Starts a new tick, and a new window when the previous one is over. Leaves whose freeze ended are passed to the
+     * given consumer.
+     *
+     * @param time The current time, in ms
+     */
+    public void beginTick(long time, LongConsumer thawedLeaves) {
+        tickTransitions.clear();
+        if (time < windowEnd) {
+            return;
+        }
+        windowEnd = time + window;
+        windowIndex++;
+        windowTransitions.clear();
+        if (frozenLeaves.isEmpty()) {
+            return;
+        }
+        thawed.clear();
+        for (TLongIntIterator it = frozenLeaves.iterator(); it.hasNext(); ) {
+            it.advance();
+            if (it.value() <= windowIndex) {
+                thawed.add(it.key());
+                it.remove();
+            }
+        }
+        for (int i = 0; i < thawed.size(); i++) {
+            thawedLeaves.accept(thawed.get(i));
+        }
+    }
+
+    /**
+     * Records an output change of a leaf.
+     *
+     * @param leaf The packed position of the leaf
+     * @return Whether the change may happen this tick
+     */
+    public boolean tryTransition(long leaf) {
+        int count = tickTransitions.get(leaf);
+        if (count >= maxTransitionsPerTick) {
+            return false;
+        }
+        tickTransitions.put(leaf, count + 1);
+        windowTransitions.adjustOrPutValue(leaf, 1, 1);
+        return true;
+    }
+
+    /**
+     * @param leaf The packed position of the leaf
+     * @return Whether the leaf changed its outputs more often during the current window than the maximum frequency
+     * allows
+     */
+    public boolean isOscillating(long leaf) {
+        return windowTransitions.get(leaf) > maxWindowTransitions;
+    }
+
+    /**
+     * @return The number of times the leaf changed its outputs during the current window
+     */
+    public int getWindowTransitions(long leaf) {
+        return windowTransitions.get(leaf);
+    }
+
+    /**
+     * Freezes a leaf until the given number of windows has passed.
+     */
+    public void freeze(long leaf, int windows) {
+        frozenLeaves.put(leaf, windowIndex + Math.max(1, windows));
+        windowTransitions.remove(leaf);
+    }
+
+    public boolean isFrozen(long leaf) {
+        return !frozenLeaves.isEmpty() && frozenLeaves.containsKey(leaf);
+    }
+
+    /**
+     * @return The number of frozen leaves
+     */
+    public int getFrozenCount() {
+        return frozenLeaves.size();
+    }
+
+    public void clear() {
+        tickTransitions.clear();
+        windowTransitions.clear();
+        frozenLeaves.clear();
+    }
+}
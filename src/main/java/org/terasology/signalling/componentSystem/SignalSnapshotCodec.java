@@ -0,0 +1,174 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.iterator.TLongLongIterator;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.set.TLongSet;
+import org.terasology.math.geom.Vector3i;
+import org.terasology.signalling.components.SignalSnapshotComponent;
+import org.terasology.signalling.network.SignalPositions;
+import org.terasology.signalling.network.SignalTopologyStore;
+import org.terasology.world.chunks.ChunkConstants;
+
+/**
+ * Encodes the signal topology and delivered inputs into compact per-chunk byte arrays, and back. Positions are stored
+ * as their 16 bit index within the chunk.
+ */
+public final class SignalSnapshotCodec {
+    private static final int SIDE_COUNT = 6;
+    private static final int NODE_BYTES = 6;
+    private static final int INPUT_BYTES = 2 + SIDE_COUNT;
+    private static final int Y_SHIFT = ChunkConstants.CHUNK_POWER.z;
+    private static final int X_SHIFT = ChunkConstants.CHUNK_POWER.y + ChunkConstants.CHUNK_POWER.z;
+
+    private SignalSnapshotCodec() {
+    }
+
+    /**
+     * Encodes the known signal blocks of the given chunks, leaving out positions known to hold no signal block, and the
+     * inputs delivered to their leaves. The snapshots of the other chunks are left as they are, so that a save only
+     * encodes the chunks that changed since the last one.
+     *
+     * @param topology        The topology store
+     * @param deliveredInputs The inputs each leaf was last notified with, by packed position
+     * @param chunks          The packed positions of the chunks to encode
+     * @param snapshots       The snapshots by packed chunk position, updated with one snapshot per given chunk holding
+     *                        signal blocks
+     */
+    public static void write(SignalTopologyStore topology, TLongLongMap deliveredInputs, TLongSet chunks,
+                             TLongObjectMap<SignalSnapshotComponent.ChunkSnapshot> snapshots) {
+        for (TLongIterator it = chunks.iterator(); it.hasNext(); ) {
+            snapshots.remove(it.next());
+        }
+        TLongIntMap nodeCounts = new TLongIntHashMap();
+        for (TLongIntIterator it = topology.iterator(); it.hasNext(); ) {
+            it.advance();
+            long chunk = SuspendedSignalChunks.chunkOf(it.key());
+            if (isSignalBlock(it.value()) && chunks.contains(chunk)) {
+                nodeCounts.adjustOrPutValue(chunk, 1, 1);
+            }
+        }
+        TLongIntMap inputCounts = new TLongIntHashMap();
+        for (TLongLongIterator it = deliveredInputs.iterator(); it.hasNext(); ) {
+            it.advance();
+            long chunk = SuspendedSignalChunks.chunkOf(it.key());
+            if (chunks.contains(chunk)) {
+                inputCounts.adjustOrPutValue(chunk, 1, 1);
+            }
+        }
+
+        for (TLongIterator it = chunks.iterator(); it.hasNext(); ) {
+            long chunk = it.next();
+            if (!nodeCounts.containsKey(chunk) && !inputCounts.containsKey(chunk)) {
+                continue;
+            }
+            SignalSnapshotComponent.ChunkSnapshot snapshot = new SignalSnapshotComponent.ChunkSnapshot();
+            snapshot.chunk = SignalPositions.unpack(chunk, new Vector3i());
+            snapshot.nodes = new byte[nodeCounts.get(chunk) * NODE_BYTES];
+            snapshot.inputs = new byte[inputCounts.get(chunk) * INPUT_BYTES];
+            snapshots.put(chunk, snapshot);
+            // The counts are reused as write offsets.
+            nodeCounts.put(chunk, 0);
+            inputCounts.put(chunk, 0);
+        }
+        for (TLongIntIterator it = topology.iterator(); it.hasNext(); ) {
+            it.advance();
+            long position = it.key();
+            long chunk = SuspendedSignalChunks.chunkOf(position);
+            if (isSignalBlock(it.value()) && chunks.contains(chunk)) {
+                int offset = nodeCounts.put(chunk, nodeCounts.get(chunk) + NODE_BYTES);
+                byte[] nodes = snapshots.get(chunk).nodes;
+                writeShort(nodes, offset, indexOf(position));
+                writeShort(nodes, offset + 2, it.value() >>> 16);
+                writeShort(nodes, offset + 4, it.value());
+            }
+        }
+        for (TLongLongIterator it = deliveredInputs.iterator(); it.hasNext(); ) {
+            it.advance();
+            long position = it.key();
+            long chunk = SuspendedSignalChunks.chunkOf(position);
+            if (!chunks.contains(chunk)) {
+                continue;
+            }
+            int offset = inputCounts.put(chunk, inputCounts.get(chunk) + INPUT_BYTES);
+            byte[] inputs = snapshots.get(chunk).inputs;
+            writeShort(inputs, offset, indexOf(position));
+            long packed = it.value();
+            for (int side = 0; side < SIDE_COUNT; side++) {
+                inputs[offset + 2 + side] = (byte) (packed >>> (8 * side));
+            }
+        }
+    }
+
+    /**
+     * Decodes a chunk snapshot into the topology store and the delivered inputs.
+     *
+     * @param snapshot        The chunk snapshot
+     * @param topology        The topology store to fill
+     * @param deliveredInputs The delivered inputs to fill
+     */
+    public static void read(SignalSnapshotComponent.ChunkSnapshot snapshot, SignalTopologyStore topology, TLongLongMap deliveredInputs) {
+        if (snapshot.chunk == null) {
+            return;
+        }
+        if (snapshot.nodes != null) {
+            for (int i = 0; i + NODE_BYTES <= snapshot.nodes.length; i += NODE_BYTES) {
+                int node = readShort(snapshot.nodes, i + 2) << 16 | readShort(snapshot.nodes, i + 4);
+                topology.put(positionOf(snapshot.chunk, readShort(snapshot.nodes, i)), node);
+            }
+        }
+        if (snapshot.inputs != null) {
+            for (int i = 0; i + INPUT_BYTES <= snapshot.inputs.length; i += INPUT_BYTES) {
+                long packed = 0;
+                for (int side = 0; side < SIDE_COUNT; side++) {
+                    packed |= (long) (snapshot.inputs[i + 2 + side] & 0xFF) << (8 * side);
+                }
+                deliveredInputs.put(positionOf(snapshot.chunk, readShort(snapshot.inputs, i)), packed);
+            }
+        }
+    }
+
+    private static int indexOf(long position) {
+        return (SignalPositions.x(position) & (ChunkConstants.SIZE_X - 1)) << X_SHIFT
+                | (SignalPositions.y(position) & (ChunkConstants.SIZE_Y - 1)) << Y_SHIFT
+                | SignalPositions.z(position) & (ChunkConstants.SIZE_Z - 1);
+    }
+
+    private static long positionOf(Vector3i chunk, int index) {
+        return SignalPositions.pack((chunk.x << ChunkConstants.CHUNK_POWER.x) + (index >>> X_SHIFT),
+                (chunk.y << ChunkConstants.CHUNK_POWER.y) + (index >>> Y_SHIFT & (ChunkConstants.SIZE_Y - 1)),
+                (chunk.z << ChunkConstants.CHUNK_POWER.z) + (index & (ChunkConstants.SIZE_Z - 1)));
+    }
+
+    private static boolean isSignalBlock(int node) {
+        return SignalTopologyStore.type(node) != SignalTopologyStore.NONE;
+    }
+
+    private static void writeShort(byte[] data, int offset, int value) {
+        data[offset] = (byte) (value >>> 8);
+        data[offset + 1] = (byte) value;
+    }
+
+    private static int readShort(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 8 | data[offset + 1] & 0xFF;
+    }
+}
@@ -26,15 +26,20 @@ import org.terasology.logic.health.BeforeDestroyEvent;
 import org.terasology.logic.health.DoDestroyEvent;
 import org.terasology.math.Side;
 import org.terasology.math.SideBitFlag;
+import org.terasology.network.ClientComponent;
+import org.terasology.network.events.ConnectedEvent;
 import org.terasology.registry.In;
+import org.terasology.signalling.components.BusCableComponent;
 import org.terasology.signalling.components.CableComponent;
 import org.terasology.signalling.components.SignalLeafComponent;
 import org.terasology.world.OnChangedBlock;
+import org.terasology.world.WorldComponent;
 import org.terasology.world.WorldProvider;
 import org.terasology.world.block.Block;
 import org.terasology.world.block.BlockComponent;
 import org.terasology.world.block.BlockManager;
-import org.terasology.world.block.items.OnBlockItemPlaced;
+import org.terasology.world.chunks.event.BeforeChunkUnload;
+import org.terasology.world.chunks.event.OnChunkLoaded;
 
 @RegisterSystem(value = RegisterMode.AUTHORITY)
 public class SignalStateSystem extends BaseComponentSystem {
@@ -46,29 +51,53 @@ public class SignalStateSystem extends BaseComponentSystem {
     @In
     private BlockManager blockManager;
 
-    /**
-     * Adds the placed block to the correct list
-     *
-     * @param event     The event triggered by block placement
-     * @param entityRef The entity information of the placed block
-     */
-    @ReceiveEvent()
-    public void onBlockPlaced(OnBlockItemPlaced event, EntityRef entityRef) {
-        signalSystem.signalAllSidesAroundLocation(event.getPosition(), Integer.MAX_VALUE);
+    @ReceiveEvent(components = {BlockComponent.class})
+    public void onBlockChanged(OnChangedBlock event, EntityRef entityRef) {
+        signalSystem.blockChanged(event.getBlockPosition(), event.getOldType(), event.getNewType());
+    }
+
+    @ReceiveEvent(components = {WorldComponent.class})
+    public void onChunkLoaded(OnChunkLoaded event, EntityRef worldEntity) {
+        signalSystem.chunkLoaded(event.getChunkPos());
+    }
+
+    @ReceiveEvent(components = {WorldComponent.class})
+    public void beforeChunkUnload(BeforeChunkUnload event, EntityRef worldEntity) {
+        signalSystem.chunkUnloading(event.getChunkPos());
+    }
+
+    @ReceiveEvent(components = {ClientComponent.class})
+    public void onClientConnected(ConnectedEvent event, EntityRef client) {
+        signalSystem.sendSignalState(client);
     }
 
+    @ReceiveEvent(components = {SignalLeafComponent.class})
+    public void onDelayedTrigger(DelayedActionTriggeredEvent event, EntityRef entityRef) {
+        signalSystem.delayedTrigger(event.getActionId(), entityRef);
+    }
+
+    /**
+     * Destroys signal blocks by replacing them with air. The cable networks are updated from the resulting
+     * {@link OnChangedBlock}, like for any other block change.
+     */
     @ReceiveEvent(components = {SignalLeafComponent.class})
     public void onLeafRemoved(DoDestroyEvent event, EntityRef block) {
-        BlockComponent blockComponent = block.getComponent(BlockComponent.class);
-        worldProvider.setBlock(blockComponent.getPosition(), blockManager.getBlock(BlockManager.AIR_ID));
-        signalSystem.signalAllSidesAroundLocation(blockComponent.getPosition(), Integer.MAX_VALUE);
+        removeBlock(block);
+    }
+
+    @ReceiveEvent(components = {BusCableComponent.class})
+    public void onBusCableRemoved(DoDestroyEvent event, EntityRef block) {
+        removeBlock(block);
     }
 
     @ReceiveEvent(components = {CableComponent.class})
     public void onCableRemoved(DoDestroyEvent event, EntityRef block) {
+        removeBlock(block);
+    }
+
+    private void removeBlock(EntityRef block) {
         BlockComponent blockComponent = block.getComponent(BlockComponent.class);
         worldProvider.setBlock(blockComponent.getPosition(), blockManager.getBlock(BlockManager.AIR_ID));
-        signalSystem.signalAllSidesAroundLocation(blockComponent.getPosition(), Integer.MAX_VALUE);
     }
 
 }
@@ -15,46 +15,125 @@
  */
 package org.terasology.signalling.componentSystem;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import gnu.trove.impl.Constants;
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.iterator.TLongIterator;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.terasology.engine.Time;
+import org.terasology.entitySystem.Component;
+import org.terasology.entitySystem.entity.EntityManager;
 import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.entitySystem.prefab.Prefab;
 import org.terasology.entitySystem.systems.BaseComponentSystem;
 import org.terasology.entitySystem.systems.RegisterMode;
 import org.terasology.entitySystem.systems.RegisterSystem;
 import org.terasology.entitySystem.systems.UpdateSubscriberSystem;
 import org.terasology.logic.config.ModuleConfigManager;
+import org.terasology.math.Rotation;
 import org.terasology.math.Side;
-import org.terasology.math.SideBitFlag;
 import org.terasology.math.geom.Vector3i;
+import org.terasology.network.NetworkComponent;
 import org.terasology.registry.In;
 import org.terasology.registry.Share;
+import org.terasology.signalling.components.BusCableComponent;
 import org.terasology.signalling.components.CableComponent;
+import org.terasology.signalling.components.SignalBusComponent;
+import org.terasology.signalling.components.SignalBusStateComponent;
 import org.terasology.signalling.components.SignalLeafComponent;
+import org.terasology.signalling.components.SignalPendingOutputComponent;
+import org.terasology.signalling.components.SignalReplicationComponent;
+import org.terasology.signalling.components.SignalSnapshotComponent;
 import org.terasology.signalling.components.SignalStateComponent;
 import org.terasology.signalling.event.LeafNodeSignalChange;
+import org.terasology.signalling.event.SignalDeltaEvent;
+import org.terasology.signalling.event.SignalOscillationDetected;
+import org.terasology.signalling.event.SignalStateEvent;
+import org.terasology.signalling.network.LeafDistances;
+import org.terasology.signalling.network.LongQueue;
+import org.terasology.signalling.network.SignalNetwork;
+import org.terasology.signalling.network.SignalNetworkModel;
+import org.terasology.signalling.network.SignalNodeLookup;
+import org.terasology.signalling.network.SignalPositions;
+import org.terasology.signalling.network.SignalStateArena;
+import org.terasology.signalling.network.SignalTopologyStore;
 import org.terasology.world.BlockEntityRegistry;
+import org.terasology.world.WorldComponent;
 import org.terasology.world.WorldProvider;
 import org.terasology.world.block.Block;
 import org.terasology.world.block.BlockComponent;
-import org.terasology.world.block.family.MultiConnectFamily;
 
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.List;
 import java.util.Map;
-import java.util.PriorityQueue;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
 
 
 @RegisterSystem(value = RegisterMode.AUTHORITY)
 @Share(value = SignalSystem.class)
 public class SignalSystem extends BaseComponentSystem implements UpdateSubscriberSystem {
     private static final Logger logger = LoggerFactory.getLogger(SignalSystem.class);
-    private PriorityQueue<SignalDelayHandler> delays = new PriorityQueue<>(new SignalDelayComparitor());
+    private static final int DEFAULT_PROPAGATION_BUDGET = 4096;
+    private static final int DEFAULT_CIRCUIT_STABLE_TIME = 5000;
+    /**
+     * Delayed outputs firing more than this late, in ms, are counted as late.
+     */
+    private static final long LATE_DELAY_THRESHOLD = 50;
+    private static final long OSCILLATION_WINDOW = 1000;
+    private static final int DEFAULT_MAX_TRANSITIONS_PER_TICK = 8;
+    /**
+     * The default frequency, in Hz, leaves may switch their outputs at before they are frozen.
+     */
+    private static final int DEFAULT_MAX_OSCILLATION_FREQUENCY = 50;
+    private static final int DEFAULT_OSCILLATION_FREEZE_TIME = 5000;
+    /**
+     * The maximum number of leaves visited when looking for a feedback loop.
+     */
+    private static final int MAX_LOOP_SEARCH = 256;
+    /**
+     * The maximum number of fixed signal ticks run in one update to catch up. Further missed ticks are dropped.
+     */
+    private static final int MAX_CATCH_UP_TICKS = 10;
+    private static final Side[] SIDES = Side.values();
+    /**
+     * The index in {@link SignalStateComponent#outputs} of every world-space side, by side ordinal.
+     */
+    private static final int[] OUTPUT_INDEX = new int[SIDES.length];
+
+    static {
+        for (Side side : SIDES) {
+            OUTPUT_INDEX[side.ordinal()] = SignalStateComponent.OUTPUT_SIDES.indexOf(side);
+        }
+    }
+
+    private static final GateSignalChangeHandler NO_GATE_HANDLER = new GateSignalChangeHandler() {
+        @Override
+        public void handleGateSignalChange(EntityRef entity) {
+        }
+
+        @Override
+        public void handleDelayedTrigger(String actionId, EntityRef entity) {
+        }
+    };
+
+    private static final long DELAY_RESOLUTION = 10;
+    private static final int DELAY_SLOTS = 512;
+
+    private final SignalTimingWheel delays = new SignalTimingWheel(DELAY_RESOLUTION, DELAY_SLOTS);
 
     @In
     private Time time;
@@ -64,7 +143,256 @@ public class SignalSystem extends BaseComponentSystem implements UpdateSubscribe
     private BlockEntityRegistry blockEntityRegistry;
     @In
     private ModuleConfigManager moduleConfigManager;
-    
+    @In
+    private EntityManager entityManager;
+
+    private final WorldNodeLookup nodeLookup = new WorldNodeLookup();
+    private final SignalNetworkModel networkModel = new SignalNetworkModel(nodeLookup);
+    /**
+     * The networks of bus cables, kept apart from the single signal ones.
+     */
+    private final SignalNetworkModel busModel = new SignalNetworkModel(new BusNodeLookup());
+    /**
+     * The inputs each leaf was last notified with, by packed position and packed by {@link LeafInputs}, so that leaves
+     * are only notified when their inputs changed.
+     */
+    private final TLongLongMap deliveredInputs = new TLongLongHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0,
+            LeafInputs.NONE);
+    private final SignalPropagationQueue propagationQueue = new SignalPropagationQueue();
+    private final LongConsumer leafEvaluator = this::evaluateLeaf;
+    private final CircuitEngine circuitEngine = new CircuitEngine(this, this::getWorldOutput);
+    private int propagationBudget = DEFAULT_PROPAGATION_BUDGET;
+    private long emittedTransitions;
+    private final SignalMetrics metrics = new SignalMetrics();
+    private final SignalRateLimiter rateLimiter = new SignalRateLimiter(OSCILLATION_WINDOW, DEFAULT_MAX_TRANSITIONS_PER_TICK,
+            DEFAULT_MAX_OSCILLATION_FREQUENCY);
+    /**
+     * The output changes over the per-tick limit of their leaf, applied at the start of the next tick.
+     */
+    private final SignalCommitBuffer throttledOutputs = new SignalCommitBuffer();
+    private final SignalCommitBuffer.Sink throttledOutputReplayer = new SignalCommitBuffer.Sink() {
+        @Override
+        public void output(EntityRef entityRef, Side side, byte strength) {
+            setLeafOutput(entityRef, side, strength);
+        }
+
+        @Override
+        public void busOutput(EntityRef entityRef, Side side, int channels) {
+            setBusOutput(entityRef, side, channels);
+        }
+    };
+    private final LongConsumer thawedLeaves = this::forceLeafEvaluation;
+    private long oscillationFreezeTime = DEFAULT_OSCILLATION_FREEZE_TIME;
+    private long metricsDumpInterval;
+    private long nextMetricsDump;
+    private long suppressedTransitions;
+    private final Vector3i scratch = new Vector3i();
+    private final Vector3i nodeScratch = new Vector3i();
+    private final SignalTopologyStore topology = new SignalTopologyStore();
+    /**
+     * The encoded topology and delivered inputs of every chunk holding signal blocks, by packed chunk position, kept
+     * between saves so that only the chunks in {@link #dirtySnapshotChunks} are encoded again.
+     */
+    private final TLongObjectMap<SignalSnapshotComponent.ChunkSnapshot> chunkSnapshots = new TLongObjectHashMap<>();
+    /**
+     * The chunks whose topology or delivered inputs changed since the last save, by packed chunk position.
+     */
+    private final TLongSet dirtySnapshotChunks = new TLongHashSet();
+    /**
+     * The arrays handed to notified leaves, by nesting depth: a notified leaf may change outputs that notify other
+     * leaves before it returns.
+     */
+    private final List<NotificationBuffers> notificationBuffers = Lists.newArrayList();
+    private int deliveryDepth;
+    /**
+     * The leaves whose gate handler is running, by packed position.
+     */
+    private final TLongSet handlingLeaves = new TLongHashSet();
+    /**
+     * The sets of leaves to notify around a topology change, by nesting depth.
+     */
+    private final List<TLongIntMap> changedLeafSets = Lists.newArrayList();
+    private int topologyDepth;
+    private final Map<Class<? extends Component>, GateSignalChangeHandler> gateHandlers = Maps.newLinkedHashMap();
+    /**
+     * The gate handler of each leaf looked up so far, by packed position, {@link #NO_GATE_HANDLER} for leaves without.
+     */
+    private final TLongObjectMap<GateSignalChangeHandler> leafHandlers = new TLongObjectHashMap<>();
+    private final SuspendedSignalChunks suspendedChunks = new SuspendedSignalChunks();
+    private boolean suspendUnloadedChunks;
+    /**
+     * The leaves given a {@link SignalPendingOutputComponent} for the save in progress.
+     */
+    private final List<EntityRef> savedPendingOutputs = Lists.newArrayList();
+    private boolean replicateSignals;
+    private EntityRef replicationEntity = EntityRef.NULL;
+    private final SignalDelta replicationDelta = new SignalDelta();
+    /**
+     * A cable of each network a changed output leads into this tick, by packed position, with {@link SignalDelta#BUS}
+     * for bus networks.
+     */
+    private final TLongIntMap changedNetworks = new TLongIntHashMap();
+    /**
+     * The length of a fixed signal tick in ms, or 0 to run one signal tick per update.
+     */
+    private int tickLength;
+    private long nextTickTime = Long.MIN_VALUE;
+    /**
+     * The time of the last fixed signal tick.
+     */
+    private long signalTime;
+    private final SignalCommitBuffer commitBuffer = new SignalCommitBuffer();
+    /**
+     * The outputs of leaves when the "stateArena" setting is on. They are copied into the {@link SignalStateComponent}
+     * of the leaves only when saving and when their chunk unloads.
+     */
+    private final SignalStateArena stateArena = new SignalStateArena(SuspendedSignalChunks::chunkOf);
+    private boolean useStateArena;
+    private final SignalCommitBuffer.Sink committer = new SignalCommitBuffer.Sink() {
+        @Override
+        public void output(EntityRef entityRef, Side side, byte strength) {
+            applyLeafOutput(entityRef, side, strength);
+        }
+
+        @Override
+        public void busOutput(EntityRef entityRef, Side side, int channels) {
+            applyBusOutput(entityRef, side, channels);
+        }
+    };
+
+    @Override
+    public void initialise() {
+        propagationBudget = moduleConfigManager.getIntVariable("ProtoSignals", "propagationBudget", DEFAULT_PROPAGATION_BUDGET);
+        circuitEngine.setEnabled(moduleConfigManager.getBooleanVariable("ProtoSignals", "compiledCircuits", false), time.getGameTimeInMs());
+        circuitEngine.setStableTime(moduleConfigManager.getIntVariable("ProtoSignals", "circuitStableTime", DEFAULT_CIRCUIT_STABLE_TIME));
+        rateLimiter.setMaxTransitionsPerTick(moduleConfigManager.getIntVariable("ProtoSignals", "maxTransitionsPerTick", DEFAULT_MAX_TRANSITIONS_PER_TICK));
+        rateLimiter.setMaxFrequency(moduleConfigManager.getIntVariable("ProtoSignals", "maxOscillationFrequency", DEFAULT_MAX_OSCILLATION_FREQUENCY));
+        oscillationFreezeTime = moduleConfigManager.getIntVariable("ProtoSignals", "oscillationFreezeTime", DEFAULT_OSCILLATION_FREEZE_TIME);
+        metricsDumpInterval = moduleConfigManager.getIntVariable("ProtoSignals", "metricsDumpInterval", 0);
+        suspendUnloadedChunks = moduleConfigManager.getBooleanVariable("ProtoSignals", "suspendUnloadedChunks", false);
+        replicateSignals = moduleConfigManager.getBooleanVariable("ProtoSignals", "replicateSignals", false);
+        int tickRate = moduleConfigManager.getIntVariable("ProtoSignals", "signalTickRate", 0);
+        tickLength = tickRate > 0 ? Math.max(1, 1000 / tickRate) : 0;
+        signalTime = time.getGameTimeInMs();
+        useStateArena = moduleConfigManager.getBooleanVariable("ProtoSignals", "stateArena", false);
+        circuitEngine.setParallelism(moduleConfigManager.getIntVariable("ProtoSignals", "circuitThreads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    @Override
+    public void postBegin() {
+        EntityRef worldEntity = getWorldEntity();
+        SignalSnapshotComponent snapshotComponent = worldEntity.getComponent(SignalSnapshotComponent.class);
+        if (snapshotComponent != null) {
+            for (SignalSnapshotComponent.ChunkSnapshot snapshot : snapshotComponent.chunks) {
+                if (snapshot.chunk == null)
+                    continue;
+                SignalSnapshotCodec.read(snapshot, topology, deliveredInputs);
+                chunkSnapshots.put(SignalPositions.pack(snapshot.chunk), snapshot);
+            }
+            worldEntity.removeComponent(SignalSnapshotComponent.class);
+        }
+        List<EntityRef> stored = Lists.newArrayList(entityManager.getEntitiesWith(SignalPendingOutputComponent.class, BlockComponent.class));
+        scheduleRestored(takePendingOutputs(stored));
+
+        if (replicateSignals)
+            replicationEntity = getReplicationEntity();
+    }
+
+    /**
+     * Saves the topology snapshot on the world entity, and the pending delayed outputs on their leaves, so that a
+     * loaded world neither rediscovers its cables from block entities nor loses its timers. Only the chunks that
+     * changed since the last save are encoded again.
+     */
+    @Override
+    public void preSave() {
+        flushAllStateArena(false);
+        SignalSnapshotCodec.write(topology, deliveredInputs, dirtySnapshotChunks, chunkSnapshots);
+        dirtySnapshotChunks.clear();
+        EntityRef worldEntity = getWorldEntity();
+        SignalSnapshotComponent snapshotComponent = new SignalSnapshotComponent();
+        snapshotComponent.chunks.addAll(chunkSnapshots.valueCollection());
+        worldEntity.addOrSaveComponent(snapshotComponent);
+
+        List<SignalDelayHandler> pending = delays.getPending();
+        suspendedChunks.collectDelays(pending);
+        for (SignalDelayHandler handler : pending) {
+            storePendingOutput(handler);
+            savedPendingOutputs.add(handler.entityRef);
+        }
+    }
+
+    @Override
+    public void postSave() {
+        getWorldEntity().removeComponent(SignalSnapshotComponent.class);
+        for (EntityRef entityRef : savedPendingOutputs) {
+            entityRef.removeComponent(SignalPendingOutputComponent.class);
+        }
+        savedPendingOutputs.clear();
+    }
+
+    @Override
+    public void shutdown() {
+        circuitEngine.shutdown();
+        stateArena.clear();
+    }
+
+    /**
+     * @return The entity signal deltas are broadcast through, created on first use
+     */
+    private EntityRef getReplicationEntity() {
+        for (EntityRef entityRef : entityManager.getEntitiesWith(SignalReplicationComponent.class)) {
+            return entityRef;
+        }
+        NetworkComponent networkComponent = new NetworkComponent();
+        networkComponent.replicateMode = NetworkComponent.ReplicateMode.ALWAYS;
+        return entityManager.create(new SignalReplicationComponent(), networkComponent);
+    }
+
+    private EntityRef getWorldEntity() {
+        for (EntityRef entityRef : entityManager.getEntitiesWith(WorldComponent.class)) {
+            return entityRef;
+        }
+        return EntityRef.NULL;
+    }
+
+    /**
+     * @return The engine simulating compiled gate circuits, disabled unless the "compiledCircuits" setting is on
+     */
+    public CircuitEngine getCircuitEngine() {
+        return circuitEngine;
+    }
+
+    /**
+     * @return The length of a fixed signal tick in ms, or 0 if a signal tick runs on every update
+     */
+    public int getTickLength() {
+        return tickLength;
+    }
+
+    /**
+     * @return The time signal changes happen at: the time of the last fixed signal tick, or the game time without
+     * fixed ticks
+     */
+    public long getSignalTime() {
+        return tickLength > 0 ? signalTime : time.getGameTimeInMs();
+    }
+
+    /**
+     * @return The maximum number of leaves evaluated per tick
+     */
+    public int getPropagationBudget() {
+        return propagationBudget;
+    }
+
+    /**
+     * Sets the maximum number of leaves evaluated per tick. Leaves over the budget are evaluated on the following ticks.
+     * With fixed signal ticks, every dirty leaf is evaluated on each tick and the budget does not apply.
+     *
+     * @param propagationBudget The new budget, at least 1
+     */
+    public void setPropagationBudget(int propagationBudget) {
+        this.propagationBudget = Math.max(1, propagationBudget);
+    }
 
     public Side getTransformedSide(EntityRef entityRef,Side side) {
         BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
@@ -75,208 +403,1477 @@ public class SignalSystem extends BaseComponentSystem implements UpdateSubscribe
     }
 
     public EnumSet<Side> getActiveSides(EntityRef entityRef,Set<Side> sides) {
+        EnumSet<Side> result = EnumSet.noneOf(Side.class);
         BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
         if (blockComponent == null)
-            return EnumSet.noneOf(Side.class);
+            return result;
 
-        EnumSet<Side> result = EnumSet.noneOf(Side.class);
+        long location = SignalPositions.pack(blockComponent.getPosition());
         for (Side side : sides) {
-
-            EntityRef neighborEntity = blockEntityRegistry.getBlockEntityAt(new Vector3i(new Vector3i(blockComponent.getPosition())).add(getTransformedSide(entityRef, side).getVector3i()));
-            if (neighborEntity.hasComponent(CableComponent.class) || neighborEntity.hasComponent(SignalLeafComponent.class)) {
+            if (isSignalBlock(SignalPositions.neighbor(location, blockComponent.getBlock().getRotation().rotate(side))))
                 result.add(side);
-            }
         }
         return result;
     }
 
+    /**
+     * Counts the input sides of a leaf that have a cable or another leaf next to them, from the topology store.
+     *
+     * @param entityRef The leaf entity
+     * @return The number of connected input sides
+     */
+    public int getConnectedInputCount(EntityRef entityRef) {
+        BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+        if (blockComponent == null)
+            return 0;
+
+        long location = SignalPositions.pack(blockComponent.getPosition());
+        int inputs = SignalTopologyStore.inputs(getNode(location));
+        int count = 0;
+        for (int side = 0; side < SIDES.length; side++) {
+            if (SignalPositions.hasSide(inputs, side) && isSignalBlock(SignalPositions.neighbor(location, side)))
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Tells the cable block families which way to connect. The neighbor is read from the block in the world rather
+     * than from the topology cache, which may not be invalidated yet when the engine updates the neighbors of a
+     * changed block.
+     *
+     * @param location The location of a block
+     * @param side     A world-space side of the block
+     * @return Whether the block next to that side is a cable, or a leaf with an input or output facing the block
+     */
+    public boolean connectsTo(Vector3i location, Side side) {
+        int node = readNeighborBlockNode(location, side);
+        switch (SignalTopologyStore.type(node)) {
+            case SignalTopologyStore.CABLE:
+                return true;
+            case SignalTopologyStore.LEAF:
+                return SignalPositions.hasSide(SignalTopologyStore.sides(node), SignalPositions.reverse(side.ordinal()));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Tells the bus cable block families which way to connect, reading the neighbor from the world like
+     * {@link #connectsTo(Vector3i, Side)}.
+     *
+     * @param location The location of a block
+     * @param side     A world-space side of the block
+     * @return Whether the block next to that side is a bus cable, or a leaf with a bus input or output facing the block
+     */
+    public boolean connectsToBus(Vector3i location, Side side) {
+        return isBusConnection(readNeighborBlockNode(location, side), side);
+    }
+
+    private int readNeighborBlockNode(Vector3i location, Side side) {
+        return readBlockNode(worldProvider.getBlock(SignalPositions.unpack(SignalPositions.neighbor(SignalPositions.pack(location), side), nodeScratch)));
+    }
+
+    private boolean connectsToBus(long location, Side side) {
+        return isBusConnection(getNode(SignalPositions.neighbor(location, side)), side);
+    }
+
+    private static boolean isBusConnection(int node, Side side) {
+        switch (SignalTopologyStore.type(node)) {
+            case SignalTopologyStore.BUS_CABLE:
+                return true;
+            case SignalTopologyStore.LEAF:
+                return SignalPositions.hasSide(SignalTopologyStore.busSides(node), SignalPositions.reverse(side.ordinal()));
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Updates the cable networks for a block that changed, and notifies the leaves whose inputs changed. Every block
+     * change goes through here, whether the block was placed by a player or set by another system.
+     *
+     * @param location The location of the block
+     * @param oldBlock The block before the change
+     * @param newBlock The block after the change
+     */
+    public void blockChanged(Vector3i location, Block oldBlock, Block newBlock) {
+        int oldNode = readBlockNode(oldBlock);
+        int newNode = readBlockNode(newBlock);
+        int oldType = SignalTopologyStore.type(oldNode);
+        int newType = SignalTopologyStore.type(newNode);
+        if (oldType == SignalTopologyStore.NONE && newType == SignalTopologyStore.NONE)
+            return;
+
+        // Cables change block with their connections and lamps when they toggle, which leaves the networks and the
+        // leaf as they were.
+        if (oldNode == newNode && (newType != SignalTopologyStore.LEAF || isSameLeaf(oldBlock, newBlock)))
+            return;
+
+        long packedLocation = SignalPositions.pack(location);
+        invalidateNode(packedLocation);
+        if (oldNode == newNode) {
+            // Another leaf with the same sides still has to be evaluated on its own.
+            circuitEngine.leafReplaced(packedLocation, getSignalTime());
+            forceLeafEvaluation(packedLocation);
+            return;
+        }
+
+        if (oldType == SignalTopologyStore.CABLE) {
+            networkModel.cableRemoved(packedLocation);
+        } else if (oldType == SignalTopologyStore.BUS_CABLE) {
+            busModel.cableRemoved(packedLocation);
+        } else if (oldType == SignalTopologyStore.LEAF) {
+            networkModel.leafRemoved(packedLocation);
+            busModel.leafRemoved(packedLocation);
+            deliveredInputs.remove(packedLocation);
+        }
+        if (newType == SignalTopologyStore.CABLE) {
+            networkModel.cableAdded(packedLocation);
+        } else if (newType == SignalTopologyStore.BUS_CABLE) {
+            busModel.cableAdded(packedLocation);
+        } else if (newType == SignalTopologyStore.LEAF) {
+            networkModel.leafAdded(packedLocation);
+            busModel.leafAdded(packedLocation);
+        }
+        signalChangedLeafsAround(packedLocation);
+    }
+
+    /**
+     * @return Whether two blocks with the same topology node hold the same leaf: blocks of the same family, or blocks
+     * whose prefabs have the same components, such as the on and off blocks of a lamp
+     */
+    static boolean isSameLeaf(Block oldBlock, Block newBlock) {
+        if (oldBlock == newBlock || oldBlock.getBlockFamily() == newBlock.getBlockFamily())
+            return true;
+        Prefab oldPrefab = oldBlock.getPrefab().orElse(null);
+        Prefab newPrefab = newBlock.getPrefab().orElse(null);
+        if (oldPrefab == null || newPrefab == null)
+            return oldPrefab == newPrefab;
+        return getComponentTypes(oldPrefab).equals(getComponentTypes(newPrefab));
+    }
+
+    private static Set<Class<? extends Component>> getComponentTypes(Prefab prefab) {
+        Set<Class<? extends Component>> componentTypes = Sets.newHashSet();
+        for (Component component : prefab.iterateComponents())
+            componentTypes.add(component.getClass());
+        return componentTypes;
+    }
+
+    private void invalidateNode(long location) {
+        topology.invalidate(location);
+        markSnapshotDirty(location);
+        leafHandlers.remove(location);
+        // The outputs belonged to the previous block.
+        stateArena.remove(location);
+    }
+
+    /**
+     * Registers the handler evaluating the leaves with a component. Such leaves are evaluated by calling the handler
+     * from the propagation loop, and are no longer sent a {@link LeafNodeSignalChange}. When a leaf has the components
+     * of several handlers, the first registered one wins.
+     *
+     * @param componentType The component marking the leaves of the handler
+     * @param handler       The handler
+     */
+    public void registerGateHandler(Class<? extends Component> componentType, GateSignalChangeHandler handler) {
+        gateHandlers.put(componentType, handler);
+        gateHandlersChanged();
+    }
+
+    public void unregisterGateHandler(Class<? extends Component> componentType) {
+        gateHandlers.remove(componentType);
+        gateHandlersChanged();
+    }
+
+    /**
+     * Forgets the handlers looked up for leaves, and the circuits compiled for them: a gate may no longer have a
+     * {@link CompilableGateHandler}.
+     */
+    private void gateHandlersChanged() {
+        leafHandlers.clear();
+        circuitEngine.decompileAll(getSignalTime());
+    }
+
+    /**
+     * @return The handler registered for a component of the leaf, or null if there is none
+     */
+    public GateSignalChangeHandler getGateHandler(EntityRef entityRef) {
+        for (Map.Entry<Class<? extends Component>, GateSignalChangeHandler> entry : gateHandlers.entrySet()) {
+            if (entityRef.hasComponent(entry.getKey()))
+                return entry.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * @return The handler registered for a component of the leaf at a position, or null if there is none, looked up
+     * once per leaf
+     */
+    GateSignalChangeHandler getGateHandler(EntityRef entityRef, long location) {
+        GateSignalChangeHandler handler = leafHandlers.get(location);
+        if (handler == null) {
+            handler = getGateHandler(entityRef);
+            if (handler == null)
+                handler = NO_GATE_HANDLER;
+            leafHandlers.put(location, handler);
+        }
+        return handler != NO_GATE_HANDLER ? handler : null;
+    }
+
+    /**
+     * Passes a delayed action of a leaf to the handler registered for it.
+     *
+     * @param actionId  The id of the delayed action
+     * @param entityRef The leaf entity
+     * @return Whether a handler took the action
+     */
+    public boolean delayedTrigger(String actionId, EntityRef entityRef) {
+        GateSignalChangeHandler handler = getGateHandler(entityRef);
+        if (handler == null)
+            return false;
+        handler.handleDelayedTrigger(actionId, entityRef);
+        return true;
+    }
+
+    /**
+     * Hands a signal change to the handler registered for the leaf, or sends it to the leaf if there is none. A leaf
+     * notified again while its handler runs, as by a handler only implementing
+     * {@link GateSignalChangeHandler#handleGateSignalChange(EntityRef)} that calls {@link #signalLeafChange}, is sent
+     * the event instead, so that the handler is not re-entered.
+     */
+    private void deliverSignalChange(EntityRef entityRef, long location, LeafNodeSignalChange event) {
+        metrics.increment(SignalMetrics.Counter.LEAF_NOTIFICATIONS);
+        GateSignalChangeHandler handler = getGateHandler(entityRef, location);
+        boolean handled = handler != null && handlingLeaves.add(location);
+        deliveryDepth++;
+        try {
+            if (handled)
+                handler.handleGateSignalChange(entityRef, event);
+            else
+                entityRef.send(event);
+        } finally {
+            deliveryDepth--;
+            if (handled)
+                handlingLeaves.remove(location);
+        }
+    }
+
+    /**
+     * @return The arrays to build the notification of a leaf with at the current delivery depth
+     */
+    private NotificationBuffers getNotificationBuffers() {
+        while (notificationBuffers.size() <= deliveryDepth) {
+            notificationBuffers.add(new NotificationBuffers());
+        }
+        return notificationBuffers.get(deliveryDepth);
+    }
+
+    private boolean isSignalBlock(long position) {
+        int type = SignalTopologyStore.type(getNode(position));
+        return type == SignalTopologyStore.CABLE || type == SignalTopologyStore.LEAF;
+    }
+
+    /**
+     * @return The packed node of a position from the topology store, read from the block entity on first use
+     */
+    private int getNode(long position) {
+        int node = topology.get(position);
+        if (node != SignalTopologyStore.UNKNOWN)
+            return node;
+
+        if (isSuspended(position))
+            return readSuspendedNode(position);
+
+        EntityRef entityRef = blockEntityRegistry.getBlockEntityAt(SignalPositions.unpack(position, nodeScratch));
+        if (entityRef.hasComponent(CableComponent.class)) {
+            topology.putCable(position);
+            markSnapshotDirty(position);
+            return topology.get(position);
+        }
+        if (entityRef.hasComponent(BusCableComponent.class)) {
+            topology.putBusCable(position);
+            markSnapshotDirty(position);
+            return topology.get(position);
+        }
+        SignalLeafComponent signalLeafComponent = entityRef.getComponent(SignalLeafComponent.class);
+        BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+        if (signalLeafComponent == null || blockComponent == null) {
+            topology.putNone(position);
+            return topology.get(position);
+        }
+        node = packLeaf(signalLeafComponent, entityRef.getComponent(SignalBusComponent.class), blockComponent.getBlock().getRotation());
+        topology.put(position, node);
+        markSnapshotDirty(position);
+        return node;
+    }
+
+    /**
+     * Marks the chunk of a position to be encoded again on the next save.
+     */
+    private void markSnapshotDirty(long position) {
+        dirtySnapshotChunks.add(SuspendedSignalChunks.chunkOf(position));
+    }
+
+    /**
+     * Reads the node of a position in a suspended chunk from the prefab of its block, so that no block entity is created.
+     * The node is not stored, as the block is only known for sure once the chunk loads.
+     */
+    private int readSuspendedNode(long position) {
+        return readBlockNode(worldProvider.getBlock(SignalPositions.unpack(position, nodeScratch)));
+    }
+
+    /**
+     * @return The packed topology node of a block, read from its prefab
+     */
+    static int readBlockNode(Block block) {
+        Prefab prefab = block.getPrefab().orElse(null);
+        if (prefab == null)
+            return SignalTopologyStore.pack(SignalTopologyStore.NONE, 0, 0);
+        if (prefab.hasComponent(CableComponent.class))
+            return SignalTopologyStore.pack(SignalTopologyStore.CABLE, 0, 0);
+        if (prefab.hasComponent(BusCableComponent.class))
+            return SignalTopologyStore.pack(SignalTopologyStore.BUS_CABLE, 0, 0);
+        SignalLeafComponent signalLeafComponent = prefab.getComponent(SignalLeafComponent.class);
+        if (signalLeafComponent == null)
+            return SignalTopologyStore.pack(SignalTopologyStore.NONE, 0, 0);
+        return packLeaf(signalLeafComponent, prefab.getComponent(SignalBusComponent.class), block.getRotation());
+    }
+
+    private static int packLeaf(SignalLeafComponent signalLeafComponent, SignalBusComponent signalBusComponent, Rotation rotation) {
+        int inputs = rotateSides(signalLeafComponent.inputs, rotation);
+        int outputs = rotateSides(signalLeafComponent.outputs, rotation);
+        if (signalBusComponent == null)
+            return SignalTopologyStore.pack(SignalTopologyStore.LEAF, inputs, outputs);
+        return SignalTopologyStore.pack(SignalTopologyStore.LEAF, inputs, outputs,
+                rotateSides(signalBusComponent.inputs, rotation), rotateSides(signalBusComponent.outputs, rotation));
+    }
+
+    private static int rotateSides(Set<Side> sides, Rotation rotation) {
+        int mask = 0;
+        for (Side side : sides) {
+            mask |= SignalPositions.sideBit(rotation.rotate(side));
+        }
+        return mask;
+    }
+
     public int getLeafOutput(EntityRef entityRef, Side side) {
+        if (useStateArena) {
+            BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+            if (blockComponent == null || !entityRef.hasComponent(SignalLeafComponent.class))
+                return 0;
+            int node = getArenaNode(entityRef, SignalPositions.pack(blockComponent.getPosition()));
+            return stateArena.getOutput(node, OUTPUT_INDEX[blockComponent.getBlock().getRotation().rotate(side).ordinal()]);
+        }
         SignalStateComponent signalStateComponent = entityRef.getComponent(SignalStateComponent.class);
         if (signalStateComponent == null)
             return 0;
-        return signalStateComponent.outputs[SignalStateComponent.OUTPUT_SIDES.indexOf(getTransformedSide(entityRef,side))];
+        return signalStateComponent.outputs[OUTPUT_INDEX[getTransformedSide(entityRef,side).ordinal()]];
     }
 
+    /**
+     * Sets the output of a leaf. With fixed signal ticks the change is staged, and applied with the other changes of
+     * the tick once every leaf of the tick has been evaluated.
+     */
     public boolean setLeafOutput(EntityRef entityRef, Side side, byte strength) {
+        if (tickLength == 0)
+            return applyLeafOutput(entityRef, side, strength);
+        SignalLeafComponent signalLeafComponent = entityRef.getComponent(SignalLeafComponent.class);
+        BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+        if (signalLeafComponent == null || blockComponent == null || !signalLeafComponent.outputs.contains(side))
+            return false;
+        commitBuffer.stageOutput(SignalPositions.pack(blockComponent.getPosition()), entityRef, side, strength);
+        return true;
+    }
+
+    private boolean applyLeafOutput(EntityRef entityRef, Side side, byte strength) {
         SignalLeafComponent signalLeafComponent = entityRef.getComponent(SignalLeafComponent.class);
         if (signalLeafComponent == null)
             return false;
 
         if (signalLeafComponent.outputs.contains(side)) {
 
-            int sideIndex = SignalStateComponent.OUTPUT_SIDES.indexOf(getTransformedSide(entityRef,side));
-            SignalStateComponent signalStateComponent = entityRef.getComponent(SignalStateComponent.class);
-            if (signalStateComponent == null)
-                signalStateComponent = new SignalStateComponent();
-            if (signalStateComponent.outputs[sideIndex] == strength)
+            Side worldSide = getTransformedSide(entityRef,side);
+            int sideIndex = OUTPUT_INDEX[worldSide.ordinal()];
+            long location = SignalPositions.pack(entityRef.getComponent(BlockComponent.class).getPosition());
+            SignalStateComponent signalStateComponent = null;
+            int node = SignalStateArena.NO_NODE;
+            int previousValue;
+            if (useStateArena) {
+                node = getArenaNode(entityRef, location);
+                previousValue = stateArena.getOutput(node, sideIndex);
+            } else {
+                signalStateComponent = entityRef.getComponent(SignalStateComponent.class);
+                if (signalStateComponent == null)
+                    signalStateComponent = new SignalStateComponent();
+                previousValue = signalStateComponent.outputs[sideIndex];
+            }
+            if (previousValue == strength) {
+                // A change throttled earlier in the tick is superseded by this one.
+                throttledOutputs.cancelOutput(location, side);
+                suppressedTransitions++;
+                return true;
+            }
+
+            if (!rateLimiter.tryTransition(location)) {
+                // Too many changes this tick: apply this one on the next tick instead, leaving delayed outputs alone.
+                metrics.increment(SignalMetrics.Counter.THROTTLED_TRANSITIONS);
+                throttledOutputs.stageOutput(location, entityRef, side, strength);
                 return true;
+            }
 
-            int previousValue = signalStateComponent.outputs[sideIndex];
-            signalStateComponent.outputs[sideIndex] = strength;
-            entityRef.addOrSaveComponent(signalStateComponent);
-            signalAllLeafsFromSide(entityRef, side, Math.max(strength, previousValue));
+            emittedTransitions++;
+            if (useStateArena) {
+                stateArena.setOutput(node, sideIndex, strength);
+            } else {
+                signalStateComponent.outputs[sideIndex] = strength;
+                entityRef.addOrSaveComponent(signalStateComponent);
+            }
+            outputChanged(location, worldSide, strength);
+            int distanceCap = strength == -1 || previousValue == -1 ? Integer.MAX_VALUE : Math.max(strength, previousValue);
+            signalAllLeafsFromSide(entityRef, side, distanceCap);
+            if (rateLimiter.isOscillating(location))
+                freezeOscillatingLeaf(entityRef, location);
             return true;
         }
         return false;
     }
 
+    /**
+     * Sets the output of a leaf after a delay. Requests that would not change the output are dropped: a request for the
+     * current output cancels a pending change, and a request for the value already pending keeps its due time.
+     */
     public boolean setLeafOutput(EntityRef entityRef, Side side, byte strength, long delay) {
         SignalLeafComponent signalLeafComponent = entityRef.getComponent(SignalLeafComponent.class);
         if (signalLeafComponent == null)
             return false;
 
         if (signalLeafComponent.outputs.contains(side)) {
-            SignalStateComponent signalStateComponent = entityRef.getComponent(SignalStateComponent.class);
-            if (signalStateComponent == null)
-                signalStateComponent = new SignalStateComponent();
-            if (signalStateComponent.outputs[SignalStateComponent.OUTPUT_SIDES.indexOf(getTransformedSide(entityRef,side))] == strength)
-                return true;
-
-            SignalDelayHandler handler = new SignalDelayHandler(delay, time.getGameTimeInMs(), entityRef, strength, side);
-            if(delays.contains(handler)){
-                delays.remove(handler);
+            int current = getLeafOutput(entityRef, side);
+            SignalDelayHandler handler = new SignalDelayHandler(delay, getSignalTime(), entityRef, strength, side);
+            SignalDelayHandler pending = delays.getPending(handler);
+            if (current == strength) {
+                if (pending != null)
+                    delays.cancel(handler);
+                suppressedTransitions++;
+            } else if (pending != null && pending.strength == strength) {
+                suppressedTransitions++;
+            } else {
+                delays.schedule(handler);
+                emittedTransitions++;
             }
-            delays.add(handler);
             return true;
-
         }
         return false;
     }
 
+    /**
+     * @param entityRef The leaf entity
+     * @param side      A bus output side of the leaf
+     * @return The channels the leaf outputs on that side
+     */
+    public int getBusOutput(EntityRef entityRef, Side side) {
+        SignalBusStateComponent signalBusStateComponent = entityRef.getComponent(SignalBusStateComponent.class);
+        if (signalBusStateComponent == null)
+            return 0;
+        return signalBusStateComponent.outputs[OUTPUT_INDEX[getTransformedSide(entityRef, side).ordinal()]];
+    }
+
+    /**
+     * Sets the channels a leaf outputs on a bus side, and queues the leaves of the bus for evaluation. Bus outputs are
+     * applied right away, or with the other changes of the tick with fixed signal ticks: the leaves reading them are
+     * evaluated on the next tick.
+     *
+     * @param entityRef The leaf entity
+     * @param side      A bus output side of the leaf
+     * @param channels  The mask of the channels to set, cut to the width of the leaf
+     * @return Whether the side is a bus output of the leaf
+     */
+    public boolean setBusOutput(EntityRef entityRef, Side side, int channels) {
+        if (tickLength == 0)
+            return applyBusOutput(entityRef, side, channels);
+        SignalBusComponent signalBusComponent = entityRef.getComponent(SignalBusComponent.class);
+        BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+        if (signalBusComponent == null || blockComponent == null || !signalBusComponent.outputs.contains(side))
+            return false;
+        commitBuffer.stageBusOutput(SignalPositions.pack(blockComponent.getPosition()), entityRef, side, channels);
+        return true;
+    }
+
+    private boolean applyBusOutput(EntityRef entityRef, Side side, int channels) {
+        SignalBusComponent signalBusComponent = entityRef.getComponent(SignalBusComponent.class);
+        if (signalBusComponent == null || !signalBusComponent.outputs.contains(side))
+            return false;
+
+        channels &= signalBusComponent.getChannelMask();
+        Side worldSide = getTransformedSide(entityRef, side);
+        int sideIndex = OUTPUT_INDEX[worldSide.ordinal()];
+        SignalBusStateComponent signalBusStateComponent = entityRef.getComponent(SignalBusStateComponent.class);
+        if (signalBusStateComponent == null)
+            signalBusStateComponent = new SignalBusStateComponent();
+        if (signalBusStateComponent.outputs[sideIndex] == channels) {
+            suppressedTransitions++;
+            return true;
+        }
+
+        long location = SignalPositions.pack(entityRef.getComponent(BlockComponent.class).getPosition());
+        if (!rateLimiter.tryTransition(location)) {
+            // Too many changes this tick: evaluate the leaf again on the next tick instead.
+            metrics.increment(SignalMetrics.Counter.THROTTLED_TRANSITIONS);
+            propagationQueue.markDirty(location);
+            return true;
+        }
+
+        emittedTransitions++;
+        signalBusStateComponent.outputs[sideIndex] = channels;
+        entityRef.addOrSaveComponent(signalBusStateComponent);
+        markBusLeafsFromSide(location, worldSide);
+        recordOutput(location, worldSide.ordinal(), channels != 0, true);
+        return true;
+    }
+
+    private void markBusLeafsFromSide(long location, Side side) {
+        long start = SignalPositions.neighbor(location, side);
+        int node = getNode(start);
+        if (SignalTopologyStore.type(node) == SignalTopologyStore.LEAF) {
+            propagationQueue.markDirty(start);
+            return;
+        }
+        SignalNetwork network = busModel.getNetwork(start);
+        if (network == null)
+            return;
+        for (TLongIntIterator it = network.getLeaves().iterator(); it.hasNext(); ) {
+            it.advance();
+            if (it.key() != location)
+                propagationQueue.markDirty(it.key());
+        }
+    }
+
+    /**
+     * @return The number of output changes applied or scheduled since the last reset, including those of compiled
+     * circuits
+     */
+    public long getEmittedTransitions() {
+        return emittedTransitions + circuitEngine.getEmittedTransitions();
+    }
+
+    /**
+     * @return The number of output requests dropped since the last reset because they matched the current or pending
+     * output, including those of compiled circuits
+     */
+    public long getSuppressedTransitions() {
+        return suppressedTransitions + circuitEngine.getSuppressedTransitions();
+    }
+
+    public void resetTransitionCounters() {
+        emittedTransitions = 0;
+        suppressedTransitions = 0;
+        circuitEngine.resetTransitionCounters();
+    }
+
 
     public int getLeafInput(EntityRef entityRef, Side side) {
+        BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+        if (blockComponent == null)
+            return 0;
+        return resolveInput(SignalPositions.pack(blockComponent.getPosition()), blockComponent.getBlock().getRotation().rotate(side));
+    }
 
+    /**
+     * @param entityRef The leaf entity
+     * @param side      A bus input side of the leaf
+     * @return The channels arriving on that side, cut to the width of the leaf, or 0 if nothing is connected to it
+     */
+    public int getBusInput(EntityRef entityRef, Side side) {
         BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+        SignalBusComponent signalBusComponent = entityRef.getComponent(SignalBusComponent.class);
+        if (blockComponent == null || signalBusComponent == null)
+            return 0;
+        Side worldSide = blockComponent.getBlock().getRotation().rotate(side);
+        long location = SignalPositions.pack(blockComponent.getPosition());
+        if (!connectsToBus(location, worldSide))
+            return 0;
+        return busModel.resolveChannels(location, worldSide.ordinal()) & signalBusComponent.getChannelMask();
+    }
 
-        AtomicInteger strength = new AtomicInteger();
-        findDistanceToLeaf(blockComponent.getPosition(), getTransformedSide(entityRef,side), (targetSide, distance, target) -> {
-            SignalStateComponent signalStateComponent = target.getComponent(SignalStateComponent.class);
-            int outputStrength = 0;
-            if (signalStateComponent != null)
-                outputStrength = signalStateComponent.outputs[SignalStateComponent.OUTPUT_SIDES.indexOf(targetSide)];
-            if (outputStrength == -1) {
-                strength.set(-1);
-                return false;
-            }
-            int delta = outputStrength - distance;
-            if (delta > 0 && strength.get() < delta) {
-                strength.set(delta);
-            }
-            return true;
-        }, Integer.MAX_VALUE);
-        return strength.get();
+    /**
+     * Resolves the strength of the signal arriving at a side of a location, without allocating when the network of the
+     * side is known.
+     *
+     * @param location The packed location of the receiving leaf
+     * @param side     The world-space side to resolve
+     * @return The strongest signal arriving on the side, 0 if there is none and -1 if it is infinite
+     */
+    private int resolveInput(long location, Side side) {
+        return networkModel.resolveInput(location, side.ordinal());
     }
 
-    private EnumSet<Side> getConnections(EntityRef entityRef) {
-        if (entityRef.hasComponent(SignalLeafComponent.class)) {
-            SignalLeafComponent signalLeafComponent = entityRef.getComponent(SignalLeafComponent.class);
-            EnumSet<Side> sides = EnumSet.noneOf(Side.class);
-            for (Side side : signalLeafComponent.inputs) {
-                sides.add(getTransformedSide(entityRef,side));
-            }
+    /**
+     * Updates the caches of the network on a side of a leaf whose output on that side changed.
+     *
+     * @param location  The packed location of the leaf
+     * @param worldSide The world-space side of the changed output
+     * @param strength  The new output strength
+     */
+    void outputChanged(long location, Side worldSide, int strength) {
+        networkModel.outputChanged(location, worldSide.ordinal(), strength);
+        recordOutput(location, worldSide.ordinal(), strength != 0, false);
+    }
 
-            for (Side side : signalLeafComponent.outputs) {
-                sides.add(getTransformedSide(entityRef,side));
+    /**
+     * Adds an output change to the delta replicated at the end of the tick, with the network it leads into.
+     */
+    private void recordOutput(long location, int worldSide, boolean active, boolean bus) {
+        if (!replicateSignals)
+            return;
+        replicationDelta.outputChanged(location, worldSide, active);
+        long neighbor = SignalPositions.neighbor(location, worldSide);
+        if (SignalTopologyStore.type(getNode(neighbor)) == (bus ? SignalTopologyStore.BUS_CABLE : SignalTopologyStore.CABLE))
+            changedNetworks.put(neighbor, bus ? SignalDelta.BUS : 0);
+    }
+
+    /**
+     * Broadcasts the outputs and networks that changed during the tick to the clients, in a single
+     * {@link SignalDeltaEvent}.
+     */
+    private void replicateDelta() {
+        for (TLongIntIterator it = changedNetworks.iterator(); it.hasNext(); ) {
+            it.advance();
+            long cable = it.key();
+            int flags = it.value();
+            SignalNetworkModel model = SignalDelta.isBus(flags) ? busModel : networkModel;
+            SignalNetwork network = model.getNetwork(cable);
+            if (network == null)
+                continue;
+            if (model.getMaxOutput(network) != 0)
+                flags |= SignalDelta.POWERED;
+            replicationDelta.networkChanged(cable, flags);
+        }
+        changedNetworks.clear();
+        if (replicationDelta.isEmpty())
+            return;
+        byte[] encoded = replicationDelta.encode();
+        replicationDelta.clear();
+        metrics.add(SignalMetrics.Counter.REPLICATED_BYTES, encoded.length);
+        replicationEntity.send(new SignalDeltaEvent(encoded));
+    }
+
+    /**
+     * Sends a client that just connected the active outputs of the loaded leaves and the powered networks in a
+     * {@link SignalStateEvent}, as the {@link SignalDeltaEvent}s only carry what changed since.
+     *
+     * @param client The entity of the client
+     */
+    public void sendSignalState(EntityRef client) {
+        if (!replicateSignals)
+            return;
+        flushAllStateArena(false);
+        SignalDelta state = new SignalDelta();
+        Set<SignalNetwork> poweredNetworks = Sets.newIdentityHashSet();
+        for (EntityRef entityRef : entityManager.getEntitiesWith(SignalStateComponent.class, BlockComponent.class)) {
+            long location = SignalPositions.pack(entityRef.getComponent(BlockComponent.class).getPosition());
+            byte[] outputs = entityRef.getComponent(SignalStateComponent.class).outputs;
+            for (int side = 0; side < SIDES.length; side++) {
+                if (outputs[OUTPUT_INDEX[side]] != 0)
+                    addActiveOutput(state, poweredNetworks, location, side, false);
             }
-            return sides;
-        } else if (entityRef.hasComponent(CableComponent.class)) {
-            BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
-            Block block = blockComponent.getBlock();
-            if (block.getBlockFamily() instanceof MultiConnectFamily) {
-                return SideBitFlag.getSides(((MultiConnectFamily) block.getBlockFamily()).getConnections(block.getURI()));
+        }
+        for (EntityRef entityRef : entityManager.getEntitiesWith(SignalBusStateComponent.class, BlockComponent.class)) {
+            long location = SignalPositions.pack(entityRef.getComponent(BlockComponent.class).getPosition());
+            int[] outputs = entityRef.getComponent(SignalBusStateComponent.class).outputs;
+            for (int side = 0; side < SIDES.length; side++) {
+                if (outputs[OUTPUT_INDEX[side]] != 0)
+                    addActiveOutput(state, poweredNetworks, location, side, true);
             }
         }
-        return EnumSet.noneOf(Side.class);
+        byte[] encoded = state.encode();
+        metrics.add(SignalMetrics.Counter.REPLICATED_BYTES, encoded.length);
+        client.send(new SignalStateEvent(encoded));
     }
 
+    /**
+     * Adds an active output to a full state, with the network it powers if that one is not in the state yet.
+     */
+    private void addActiveOutput(SignalDelta state, Set<SignalNetwork> poweredNetworks, long location, int worldSide, boolean bus) {
+        state.outputChanged(location, worldSide, true);
+        long neighbor = SignalPositions.neighbor(location, worldSide);
+        if (SignalTopologyStore.type(getNode(neighbor)) != (bus ? SignalTopologyStore.BUS_CABLE : SignalTopologyStore.CABLE))
+            return;
+        SignalNetwork network = (bus ? busModel : networkModel).getNetwork(neighbor);
+        if (network != null && poweredNetworks.add(network))
+            state.networkChanged(neighbor, bus ? SignalDelta.POWERED | SignalDelta.BUS : SignalDelta.POWERED);
+    }
 
-    public void signalAllSidesAroundLocation(Vector3i location, int distanceCap) {
+    /**
+     * @return The number of inputs resolved from the per-network cache since the last reset
+     */
+    public long getInputCacheHits() {
+        return networkModel.getInputCacheHits();
+    }
 
-        for (Side side : Side.values()) {
-            this.findDistanceToLeaf(location, side, (targetSide, distance, target) -> {
-                signalLeafChange(target);
-                return true;
-            }, distanceCap);
+    /**
+     * @return The number of inputs resolved by walking the network since the last reset
+     */
+    public long getInputCacheMisses() {
+        return networkModel.getInputCacheMisses();
+    }
+
+    public void resetInputCacheCounters() {
+        networkModel.resetInputCacheCounters();
+    }
+
+    private int getWorldOutput(long location, int worldSide) {
+        if (useStateArena) {
+            int node = stateArena.get(location);
+            if (node != SignalStateArena.NO_NODE)
+                return stateArena.getOutput(node, OUTPUT_INDEX[worldSide]);
+        }
+        EntityRef leaf = getEntityAt(location);
+        if (useStateArena && leaf.hasComponent(SignalLeafComponent.class))
+            return stateArena.getOutput(getArenaNode(leaf, location), OUTPUT_INDEX[worldSide]);
+        SignalStateComponent signalStateComponent = leaf.getComponent(SignalStateComponent.class);
+        if (signalStateComponent == null)
+            return 0;
+        return signalStateComponent.outputs[OUTPUT_INDEX[worldSide]];
+    }
+
+    /**
+     * @return The arena node of a leaf, added with the outputs of its {@link SignalStateComponent} on first use
+     */
+    private int getArenaNode(EntityRef entityRef, long location) {
+        int node = stateArena.get(location);
+        if (node == SignalStateArena.NO_NODE) {
+            node = stateArena.add(location);
+            SignalStateComponent signalStateComponent = entityRef.getComponent(SignalStateComponent.class);
+            if (signalStateComponent != null)
+                stateArena.loadOutputs(node, signalStateComponent.outputs);
         }
+        return node;
+    }
+
+    /**
+     * @return Whether the outputs of leaves are kept in the state arena rather than in their components
+     */
+    boolean isStateArenaEnabled() {
+        return useStateArena;
+    }
+
+    /**
+     * Sets an output of a leaf in the state arena, for compiled circuits.
+     *
+     * @param sideIndex The index of the output in {@link SignalStateComponent#outputs}
+     * @return Whether the output changed
+     */
+    boolean setArenaOutput(EntityRef entityRef, long location, int sideIndex, byte strength) {
+        int node = getArenaNode(entityRef, location);
+        if (stateArena.getOutput(node, sideIndex) == strength)
+            return false;
+        stateArena.setOutput(node, sideIndex, strength);
+        return true;
+    }
+
+    /**
+     * Copies the dirty outputs of the state arena in every chunk into the {@link SignalStateComponent} of their leaves.
+     *
+     * @param release Whether to remove the copied nodes from the arena
+     */
+    private void flushAllStateArena(boolean release) {
+        if (!useStateArena)
+            return;
+        byte[] outputs = new byte[SIDES.length];
+        for (int node = 0; node < stateArena.getIdLimit(); node++) {
+            if (stateArena.isUsed(node))
+                flushStateNode(node, outputs, release);
+        }
+    }
 
+    /**
+     * Copies the dirty outputs of the state arena in a chunk into the {@link SignalStateComponent} of their leaves.
+     *
+     * @param chunk   The packed position of the chunk to copy
+     * @param release Whether to remove the copied nodes from the arena
+     */
+    private void flushStateArena(long chunk, boolean release) {
+        if (!useStateArena)
+            return;
+        byte[] outputs = new byte[SIDES.length];
+        int node = stateArena.getFirstInChunk(chunk);
+        while (node != SignalStateArena.NO_NODE) {
+            int next = stateArena.getNextInChunk(node);
+            flushStateNode(node, outputs, release);
+            node = next;
+        }
+    }
+
+    private void flushStateNode(int node, byte[] outputs, boolean release) {
+        long location = stateArena.getPosition(node);
+        if (stateArena.isDirty(node)) {
+            EntityRef entityRef = getEntityAt(location);
+            if (entityRef.hasComponent(SignalLeafComponent.class)) {
+                SignalStateComponent signalStateComponent = entityRef.getComponent(SignalStateComponent.class);
+                if (signalStateComponent == null)
+                    signalStateComponent = new SignalStateComponent();
+                stateArena.copyOutputs(node, outputs);
+                System.arraycopy(outputs, 0, signalStateComponent.outputs, 0, outputs.length);
+                entityRef.addOrSaveComponent(signalStateComponent);
+            }
+            stateArena.clearDirty(node);
+        }
+        if (release)
+            stateArena.remove(location);
+    }
+
+    public void signalAllSidesAroundLocation(Vector3i location, int distanceCap) {
+        long packedLocation = SignalPositions.pack(location);
+        for (Side side : SIDES) {
+            markLeafsFromSide(packedLocation, side, distanceCap);
+        }
     }
 
     public void signalAllLeafsFromSide(EntityRef entityRef, Side side, int distanceCap) {
         if (entityRef.hasComponent(SignalLeafComponent.class)) {
             BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
-            this.findDistanceToLeaf(blockComponent.getPosition(), getTransformedSide(entityRef,side), (targetSide, distance, target) -> {
-                signalLeafChange(target);
-                return true;
-            }, distanceCap);
+            markLeafsFromSide(SignalPositions.pack(blockComponent.getPosition()), blockComponent.getBlock().getRotation().rotate(side), distanceCap);
         }
     }
 
+    private void markLeafsFromSide(long location, Side side, int distanceCap) {
+        long start = SignalPositions.neighbor(location, side);
+        if (nodeLookup.isLeaf(SignalPositions.unpack(start, scratch))) {
+            propagationQueue.markDirty(start);
+            return;
+        }
+
+        LeafDistances leaves = networkModel.getLeafDistances(start, distanceCap);
+        for (int i = 0; i < leaves.size(); i++) {
+            if (leaves.getDistance(i) > distanceCap)
+                break;
+            if (leaves.getPosition(i) != location)
+                propagationQueue.markDirty(leaves.getPosition(i));
+        }
+    }
 
+    /**
+     * Queues a leaf for a {@link LeafNodeSignalChange} on the next tick, even if its inputs did not change. A leaf
+     * marked several times is only notified once.
+     *
+     * @param entityRef The leaf entity
+     */
+    public void markLeafDirty(EntityRef entityRef) {
+        BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+        if (blockComponent != null)
+            forceLeafEvaluation(SignalPositions.pack(blockComponent.getPosition()));
+    }
+
+    /**
+     * Queues a leaf for evaluation on the next tick. It is only notified if its inputs changed since it was last notified.
+     */
+    void markLeafDirty(long location) {
+        propagationQueue.markDirty(location);
+    }
+
+    /**
+     * Queues a leaf for a {@link LeafNodeSignalChange} on the next tick, even if its inputs did not change, by forgetting
+     * the inputs it was last notified with.
+     */
+    void forceLeafEvaluation(long location) {
+        deliveredInputs.remove(location);
+        markSnapshotDirty(location);
+        propagationQueue.markDirty(location);
+    }
+
+    private void evaluateLeaf(long location) {
+        if (rateLimiter.isFrozen(location))
+            return;
+        if (isSuspended(location)) {
+            if (suspendedChunks.suspendLeaf(location))
+                metrics.increment(SignalMetrics.Counter.SUSPENDED_LEAVES);
+            return;
+        }
+        metrics.increment(SignalMetrics.Counter.LEAVES_EVALUATED);
+        if (circuitEngine.offer(location, getSignalTime()))
+            return;
+        EntityRef entityRef = getEntityAt(location);
+        BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+        if (blockComponent == null || !entityRef.hasComponent(SignalLeafComponent.class))
+            return;
+        NotificationBuffers buffers = getNotificationBuffers();
+        readLeafInputs(entityRef, blockComponent, location, buffers.inputs);
+        int changedSides = storeDeliveredInputs(location, buffers.inputs);
+        // Bus inputs are not diffed: a bus leaf is notified every time it is evaluated.
+        if (changedSides == 0 && !entityRef.hasComponent(SignalBusComponent.class)) {
+            metrics.increment(SignalMetrics.Counter.UNCHANGED_LEAVES);
+            return;
+        }
+        deliverSignalChange(entityRef, location, createSignalChange(entityRef, blockComponent, location, buffers, changedSides));
+    }
+
+    EntityRef getEntityAt(long location) {
+        return blockEntityRegistry.getBlockEntityAt(SignalPositions.unpack(location, scratch));
+    }
+
+    LeafDistances getLeafDistances(long cable) {
+        return networkModel.getLeafDistances(cable);
+    }
+
+    SignalTimingWheel getDelays() {
+        return delays;
+    }
+
+    static int getOutputIndex(int worldSide) {
+        return OUTPUT_INDEX[worldSide];
+    }
+
+    /**
+     * Notifies a leaf of its current inputs right away, whether they changed or not. The event marks every side as
+     * changed.
+     */
     public void signalLeafChange(EntityRef entityRef) {
-        SignalLeafComponent signalLeafComponent = entityRef.getComponent(SignalLeafComponent.class);
+        BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+        if (blockComponent == null)
+            return;
+        long location = SignalPositions.pack(blockComponent.getPosition());
+        NotificationBuffers buffers = getNotificationBuffers();
+        readLeafInputs(entityRef, blockComponent, location, buffers.inputs);
+        storeDeliveredInputs(location, buffers.inputs);
+        deliverSignalChange(entityRef, location, createSignalChange(entityRef, blockComponent, location, buffers, LeafInputs.ALL_SIDES));
+    }
 
-        Map<Side, Integer> inputs = Maps.newHashMap();
+    /**
+     * Fills the inputs of a leaf into a six-slot array indexed by the ordinal of the unrotated input side. The time spent
+     * resolving them through the cable networks is recorded in the input resolution latency of the metrics.
+     */
+    private void readLeafInputs(EntityRef entityRef, BlockComponent blockComponent, long location, byte[] inputs) {
+        long start = System.nanoTime();
+        SignalLeafComponent signalLeafComponent = entityRef.getComponent(SignalLeafComponent.class);
+        Arrays.fill(inputs, (byte) 0);
         for (Side side : signalLeafComponent.inputs) {
-            if (getLeafInput(entityRef, side) != 0) {
-                inputs.put(side, getLeafInput(entityRef, side));
-            }
+            inputs[side.ordinal()] = (byte) resolveInput(location, blockComponent.getBlock().getRotation().rotate(side));
         }
-        entityRef.send(new LeafNodeSignalChange(inputs));
+        metrics.recordInputResolution(System.nanoTime() - start);
+    }
+
+    /**
+     * Fills the signal change event of a leaf, reading its bus inputs if it has any.
+     *
+     * @param buffers      The event and its arrays, holding the single signal inputs of the leaf
+     * @param changedSides The mask of the input sides that changed since the leaf was last notified
+     */
+    private LeafNodeSignalChange createSignalChange(EntityRef entityRef, BlockComponent blockComponent, long location, NotificationBuffers buffers,
+                                                    int changedSides) {
+        SignalBusComponent signalBusComponent = entityRef.getComponent(SignalBusComponent.class);
+        if (signalBusComponent == null)
+            return buffers.event.reset(buffers.inputs, changedSides);
+        int[] busInputs = buffers.busInputs;
+        Arrays.fill(busInputs, 0);
+        int connectedSides = 0;
+        Rotation rotation = blockComponent.getBlock().getRotation();
+        for (Side side : signalBusComponent.inputs) {
+            Side worldSide = rotation.rotate(side);
+            if (!connectsToBus(location, worldSide))
+                continue;
+            connectedSides |= SignalPositions.sideBit(side);
+            busInputs[side.ordinal()] = busModel.resolveChannels(location, worldSide.ordinal()) & signalBusComponent.getChannelMask();
+        }
+        return buffers.event.reset(buffers.inputs, changedSides, busInputs, connectedSides);
+    }
+
+    /**
+     * @return The mask of the input sides that differ from the inputs the leaf was last notified with
+     */
+    private int storeDeliveredInputs(long location, byte[] inputs) {
+        long packed = LeafInputs.pack(inputs);
+        long previous = deliveredInputs.put(location, packed);
+        if (previous != packed)
+            markSnapshotDirty(location);
+        return LeafInputs.changedSides(previous, packed);
     }
 
     public void findDistanceToLeaf(Vector3i location, Side side, SignalResponse handler, int distanceCap) {
-        Vector3i startingSide = new Vector3i(location).add(side.getVector3i());
-        EntityRef entityRef = blockEntityRegistry.getBlockEntityAt(startingSide);
+        long packedLocation = SignalPositions.pack(location);
+        long startingSide = SignalPositions.neighbor(packedLocation, side);
+        EntityRef entityRef = getEntityAt(startingSide);
         if (entityRef.hasComponent(SignalLeafComponent.class)) {
             handler.response(side.reverse(), 0, entityRef);
             return;
         }
 
-        TreeMap<Integer, Set<Vector3i>> toVisit = new TreeMap<>();
-        toVisit.put(1, Sets.newHashSet(startingSide));
-        Set<Vector3i> visited = Sets.newHashSet(location);
-        do {
-            int minimum = toVisit.firstKey();
-            if (minimum > distanceCap)
+        LeafDistances leaves = networkModel.getLeafDistances(startingSide, distanceCap);
+        for (int i = 0; i < leaves.size(); i++) {
+            if (leaves.getDistance(i) > distanceCap)
                 break;
-            Set<Vector3i> entries = toVisit.get(minimum);
-            for (Vector3i entry : entries) {
-                EntityRef ref = blockEntityRegistry.getBlockEntityAt(entry);
-                BlockComponent blockComponent = ref.getComponent(BlockComponent.class);
-                for (Side s : getConnections(ref)) {
-                    Vector3i loc = new Vector3i(blockComponent.getPosition()).add(s.getVector3i());
-                    EntityRef nextEntityRef = blockEntityRegistry.getBlockEntityAt(loc);
-                    if (!visited.contains(loc)) {
-                        if (nextEntityRef.hasComponent(SignalLeafComponent.class)) {
-                            if (!handler.response(s.reverse(), minimum, nextEntityRef))
-                                return;
-                        } else if (nextEntityRef.hasComponent(CableComponent.class)) {
-                            toVisit.putIfAbsent(minimum + 1, Sets.newHashSet());
-                            Set<Vector3i> entrySet = toVisit.get(minimum + 1);
-                            entrySet.add(loc);
-                        }
-                        visited.add(loc);
-                    }
-                }
+            if (leaves.getPosition(i) == packedLocation)
+                continue;
+            EntityRef target = getEntityAt(leaves.getPosition(i));
+            if (!handler.response(SignalPositions.side(leaves.getSide(i)), leaves.getDistance(i), target))
+                return;
+        }
+    }
+
+    /**
+     * Notifies the leaves around a changed position whose inputs changed. The leaves right next to the position are
+     * always notified, with the input side facing it marked as changed: gates such as AND depend on which inputs are
+     * connected, which changes even when no signal does.
+     */
+    private void signalChangedLeafsAround(long location) {
+        while (changedLeafSets.size() <= topologyDepth) {
+            changedLeafSets.add(new TLongIntHashMap());
+        }
+        // The values are the world-space sides of the leaves that face the location.
+        TLongIntMap leaves = changedLeafSets.get(topologyDepth);
+        leaves.clear();
+        topologyDepth++;
+        try {
+            collectChangedLeafs(location, leaves);
+            notifyChangedLeafs(leaves);
+        } finally {
+            topologyDepth--;
+        }
+    }
+
+    private void collectChangedLeafs(long location, TLongIntMap leaves) {
+        // The location itself is kept even once removed, so that a compiled circuit containing it is decompiled.
+        leaves.put(location, 0);
+        for (Side side : SIDES) {
+            long neighbor = SignalPositions.neighbor(location, side);
+            if (nodeLookup.isLeaf(SignalPositions.unpack(neighbor, scratch))) {
+                leaves.put(neighbor, SignalPositions.sideBit(side.reverse()));
+            } else {
+                SignalNetwork network = networkModel.getNetwork(neighbor);
+                SignalNetwork busNetwork = busModel.getNetwork(neighbor);
+                addNetworkLeaves(network, leaves);
+                addNetworkLeaves(busNetwork, leaves);
+                // The networks split or joined by the change may have a new powered state.
+                if (replicateSignals && network != null)
+                    changedNetworks.put(neighbor, 0);
+                else if (replicateSignals && busNetwork != null)
+                    changedNetworks.put(neighbor, SignalDelta.BUS);
             }
-            toVisit.remove(minimum);
         }
-        while (toVisit.size() > 0);
 
+        circuitEngine.topologyChanged(leaves, getSignalTime());
+    }
+
+    private void notifyChangedLeafs(TLongIntMap leaves) {
+        for (TLongIntIterator it = leaves.iterator(); it.hasNext(); ) {
+            it.advance();
+            long leaf = it.key();
+            EntityRef entityRef = blockEntityRegistry.getBlockEntityAt(SignalPositions.unpack(leaf, scratch));
+            BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+            if (blockComponent == null || !entityRef.hasComponent(SignalLeafComponent.class))
+                continue;
+            NotificationBuffers buffers = getNotificationBuffers();
+            readLeafInputs(entityRef, blockComponent, leaf, buffers.inputs);
+            int changedSides = storeDeliveredInputs(leaf, buffers.inputs) | getInputSides(entityRef, blockComponent, it.value());
+            // Bus inputs are not diffed: a bus leaf is notified of every change around it.
+            if (changedSides != 0 || entityRef.hasComponent(SignalBusComponent.class))
+                deliverSignalChange(entityRef, leaf, createSignalChange(entityRef, blockComponent, leaf, buffers, changedSides));
+        }
+    }
+
+    private static void addNetworkLeaves(SignalNetwork network, TLongIntMap leaves) {
+        if (network == null)
+            return;
+        for (TLongIntIterator it = network.getLeaves().iterator(); it.hasNext(); ) {
+            it.advance();
+            leaves.putIfAbsent(it.key(), 0);
+        }
+    }
+
+    /**
+     * @param worldSides A mask of world-space sides
+     * @return The mask of the input sides of the leaf among them, by unrotated side ordinal
+     */
+    private static int getInputSides(EntityRef entityRef, BlockComponent blockComponent, int worldSides) {
+        if (worldSides == 0)
+            return 0;
+        Rotation rotation = blockComponent.getBlock().getRotation();
+        int sides = 0;
+        for (Side side : entityRef.getComponent(SignalLeafComponent.class).inputs) {
+            if (SignalPositions.hasSide(worldSides, rotation.rotate(side).ordinal()))
+                sides |= SignalPositions.sideBit(side);
+        }
+        return sides;
     }
 
     @Override
     public void update(float delta) {
-        while (delays.peek() != null && delays.peek().getTime() < time.getGameTimeInMs()) {
-            SignalDelayHandler signalDelayHandler = delays.poll();
+        long start = System.nanoTime();
+        long now = time.getGameTimeInMs();
+        if (tickLength > 0) {
+            runFixedTicks(now);
+        } else {
+            rateLimiter.beginTick(now, thawedLeaves);
+            throttledOutputs.commit(throttledOutputReplayer);
+            fireDueDelays(delays.pollDue(now), now);
+            propagationQueue.process(propagationBudget, leafEvaluator);
+            circuitEngine.step(now);
+            metrics.increment(SignalMetrics.Counter.SIGNAL_TICKS);
+            if (replicateSignals)
+                replicateDelta();
+        }
+        metrics.endTick(System.nanoTime() - start, networkModel.getTraversalCount(), networkModel.getVisitedCableCount(),
+                delays.size(), propagationQueue.size());
+
+        if (metricsDumpInterval > 0 && now >= nextMetricsDump) {
+            if (nextMetricsDump == 0)
+                logger.info("Signal metrics: {}", SignalMetrics.CSV_HEADER);
+            else
+                logger.info("Signal metrics: {}", metrics.toCsvLine(now));
+            nextMetricsDump = now + metricsDumpInterval;
+        }
+    }
+
+    /**
+     * Runs the fixed signal ticks due since the last update, up to {@link #MAX_CATCH_UP_TICKS} of them. The ticks
+     * missed beyond that are dropped, so a stalled server does not spiral trying to catch up.
+     */
+    private void runFixedTicks(long now) {
+        if (nextTickTime == Long.MIN_VALUE)
+            nextTickTime = now;
+        int ticks = 0;
+        while (nextTickTime <= now) {
+            if (ticks == MAX_CATCH_UP_TICKS) {
+                long dropped = (now - nextTickTime) / tickLength + 1;
+                metrics.add(SignalMetrics.Counter.DROPPED_TICKS, dropped);
+                nextTickTime += dropped * tickLength;
+                break;
+            }
+            runFixedTick(nextTickTime);
+            nextTickTime += tickLength;
+            ticks++;
+        }
+    }
+
+    /**
+     * Runs one fixed signal tick in two phases. The due delayed outputs and the leaves marked dirty are first evaluated
+     * against the outputs as they were at the start of the tick, their output changes being staged. The staged changes
+     * are then committed in position order, which marks the leaves reading them dirty for the next tick.
+     * <p>
+     * Every dirty leaf is evaluated before the commit, regardless of the propagation budget: leaves carried over to
+     * the next tick would otherwise read outputs from a later tick than the others, depending on the load.
+     *
+     * @param tickTime The time of the tick, a multiple of the tick length from the first one
+     */
+    private void runFixedTick(long tickTime) {
+        signalTime = tickTime;
+        rateLimiter.beginTick(tickTime, thawedLeaves);
+        throttledOutputs.commit(throttledOutputReplayer);
+        fireDueDelays(delays.pollDue(tickTime + 1), tickTime);
+        propagationQueue.process(Integer.MAX_VALUE, leafEvaluator);
+        commitBuffer.commit(committer);
+        circuitEngine.step(tickTime);
+        metrics.increment(SignalMetrics.Counter.SIGNAL_TICKS);
+        if (replicateSignals)
+            replicateDelta();
+    }
+
+    private void fireDueDelays(List<SignalDelayHandler> due, long now) {
+        for (SignalDelayHandler signalDelayHandler : due) {
+            if (suspendDelay(signalDelayHandler))
+                continue;
+            metrics.increment(SignalMetrics.Counter.DELAYS_FIRED);
+            if (now - signalDelayHandler.getTime() > LATE_DELAY_THRESHOLD)
+                metrics.increment(SignalMetrics.Counter.LATE_DELAYS);
             this.setLeafOutput(signalDelayHandler.entityRef, signalDelayHandler.side, signalDelayHandler.strength);
         }
     }
 
+    /**
+     * @return Whether the location is in a chunk that is not loaded while the "suspendUnloadedChunks" setting is on
+     */
+    private boolean isSuspended(long location) {
+        return suspendUnloadedChunks
+                && !worldProvider.isBlockRelevant(SignalPositions.x(location), SignalPositions.y(location), SignalPositions.z(location));
+    }
+
+    /**
+     * Parks a due delayed output if the chunk of its leaf is suspended.
+     *
+     * @return Whether the output was parked
+     */
+    private boolean suspendDelay(SignalDelayHandler handler) {
+        if (!suspendUnloadedChunks)
+            return false;
+        BlockComponent blockComponent = handler.entityRef.getComponent(BlockComponent.class);
+        if (blockComponent == null)
+            return false;
+        long location = SignalPositions.pack(blockComponent.getPosition());
+        if (!isSuspended(location))
+            return false;
+        suspendedChunks.suspendDelay(location, handler);
+        metrics.increment(SignalMetrics.Counter.SUSPENDED_DELAYS);
+        return true;
+    }
+
+    /**
+     * Moves the delayed outputs pending in a chunk about to be unloaded onto their leaves, in a
+     * {@link SignalPendingOutputComponent}, so that they are saved with the chunk instead of firing while it is away.
+     *
+     * @param chunkPosition The position of the chunk
+     */
+    public void chunkUnloading(Vector3i chunkPosition) {
+        long chunk = SignalPositions.pack(chunkPosition);
+        flushStateArena(chunk, true);
+        if (!suspendUnloadedChunks)
+            return;
+        List<SignalDelayHandler> pending = delays.removeIf(handler -> {
+            BlockComponent blockComponent = handler.entityRef.getComponent(BlockComponent.class);
+            return blockComponent != null && SuspendedSignalChunks.chunkOf(SignalPositions.pack(blockComponent.getPosition())) == chunk;
+        });
+        SuspendedSignalChunks.Suspension suspension = suspendedChunks.resume(chunk);
+        if (suspension != null) {
+            pending.addAll(suspension.getDelays());
+            for (TLongIterator it = suspension.getLeaves().iterator(); it.hasNext(); ) {
+                suspendedChunks.suspendLeaf(it.next());
+            }
+        }
+        for (SignalDelayHandler handler : pending) {
+            storePendingOutput(handler);
+        }
+    }
+
+    private void storePendingOutput(SignalDelayHandler handler) {
+        SignalPendingOutputComponent pendingOutputComponent = handler.entityRef.getComponent(SignalPendingOutputComponent.class);
+        if (pendingOutputComponent == null)
+            pendingOutputComponent = new SignalPendingOutputComponent();
+        SignalPendingOutputComponent.PendingOutput output = new SignalPendingOutputComponent.PendingOutput();
+        output.side = handler.side;
+        output.strength = handler.strength;
+        output.time = handler.getTime();
+        pendingOutputComponent.outputs.add(output);
+        handler.entityRef.addOrSaveComponent(pendingOutputComponent);
+    }
+
+    /**
+     * Removes the {@link SignalPendingOutputComponent} of leaves.
+     *
+     * @return The delayed outputs it held
+     */
+    private List<SignalDelayHandler> takePendingOutputs(List<EntityRef> stored) {
+        List<SignalDelayHandler> restored = Lists.newArrayList();
+        for (EntityRef entityRef : stored) {
+            for (SignalPendingOutputComponent.PendingOutput output : entityRef.getComponent(SignalPendingOutputComponent.class).outputs) {
+                restored.add(new SignalDelayHandler(0, output.time, entityRef, output.strength, output.side));
+            }
+            entityRef.removeComponent(SignalPendingOutputComponent.class);
+        }
+        return restored;
+    }
+
+    /**
+     * Schedules restored delayed outputs again at their original due time. The overdue ones fire on the next tick,
+     * ordered by due time, position and side.
+     */
+    private void scheduleRestored(List<SignalDelayHandler> restored) {
+        restored.sort(Comparator.comparingLong(SignalDelayHandler::getTime)
+                .thenComparingLong(SignalSystem::getDelayLocation)
+                .thenComparingInt(handler -> handler.side.ordinal()));
+        for (SignalDelayHandler handler : restored) {
+            delays.schedule(handler);
+        }
+    }
+
+    /**
+     * Resumes the signal work of a chunk that loaded: its stored delayed outputs are scheduled again at their original
+     * due time, the overdue ones firing on the next tick ordered by due time, position and side, and its parked leaves
+     * are notified.
+     *
+     * @param chunkPosition The position of the chunk
+     */
+    public void chunkLoaded(Vector3i chunkPosition) {
+        long chunk = SignalPositions.pack(chunkPosition);
+        List<EntityRef> stored = Lists.newArrayList();
+        for (EntityRef entityRef : entityManager.getEntitiesWith(SignalPendingOutputComponent.class, BlockComponent.class)) {
+            if (SuspendedSignalChunks.chunkOf(SignalPositions.pack(entityRef.getComponent(BlockComponent.class).getPosition())) == chunk)
+                stored.add(entityRef);
+        }
+        List<SignalDelayHandler> restored = takePendingOutputs(stored);
+
+        SuspendedSignalChunks.Suspension suspension = suspendUnloadedChunks ? suspendedChunks.resume(chunk) : null;
+        if (suspension != null)
+            restored.addAll(suspension.getDelays());
+        scheduleRestored(restored);
+        if (suspension != null) {
+            for (TLongIterator it = suspension.getLeaves().iterator(); it.hasNext(); ) {
+                propagationQueue.markDirty(it.next());
+            }
+        }
+    }
+
+    private static long getDelayLocation(SignalDelayHandler handler) {
+        BlockComponent blockComponent = handler.entityRef.getComponent(BlockComponent.class);
+        return blockComponent != null ? SignalPositions.pack(blockComponent.getPosition()) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Stops evaluating a leaf whose outputs change on too many ticks, and tells it with a
+     * {@link SignalOscillationDetected}. It is evaluated again once the freeze is over.
+     */
+    private void freezeOscillatingLeaf(EntityRef entityRef, long location) {
+        int transitions = rateLimiter.getWindowTransitions(location);
+        boolean feedbackLoop = isInFeedbackLoop(location);
+        rateLimiter.freeze(location, (int) Math.max(1, (oscillationFreezeTime + OSCILLATION_WINDOW - 1) / OSCILLATION_WINDOW));
+        metrics.increment(SignalMetrics.Counter.FROZEN_LEAVES);
+        logger.warn("Froze signal leaf at {} for {} ms: its output changed {} times within {} ms{}", SignalPositions.unpack(location, new Vector3i()),
+                oscillationFreezeTime, transitions, OSCILLATION_WINDOW, feedbackLoop ? " in a feedback loop" : "");
+        entityRef.send(new SignalOscillationDetected(transitions, feedbackLoop, oscillationFreezeTime));
+    }
+
+    /**
+     * Looks for a path from the outputs of a leaf back to its inputs, through leaves that have outputs themselves. The
+     * search gives up after {@link #MAX_LOOP_SEARCH} leaves.
+     */
+    private boolean isInFeedbackLoop(long origin) {
+        TLongSet visited = new TLongHashSet();
+        LongQueue toVisit = new LongQueue();
+        visited.add(origin);
+        toVisit.add(origin);
+        while (!toVisit.isEmpty() && visited.size() < MAX_LOOP_SEARCH) {
+            long position = toVisit.poll();
+            EntityRef entityRef = getEntityAt(position);
+            SignalLeafComponent signalLeafComponent = entityRef.getComponent(SignalLeafComponent.class);
+            BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+            if (signalLeafComponent == null || blockComponent == null)
+                continue;
+            for (Side side : signalLeafComponent.outputs) {
+                long start = SignalPositions.neighbor(position, blockComponent.getBlock().getRotation().rotate(side));
+                if (nodeLookup.isLeaf(SignalPositions.unpack(start, scratch))) {
+                    if (visitReceiver(start, position, null, origin, visited, toVisit))
+                        return true;
+                    continue;
+                }
+                SignalNetwork network = networkModel.getNetwork(start);
+                LeafDistances leaves = networkModel.getLeafDistances(start);
+                for (int i = 0; i < leaves.size(); i++) {
+                    if (visitReceiver(leaves.getPosition(i), start, network, origin, visited, toVisit))
+                        return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether the receiver is the origin of the search and takes an input from the source
+     */
+    private boolean visitReceiver(long receiver, long source, SignalNetwork network, long origin, TLongSet visited, LongQueue toVisit) {
+        if (receiver != origin && visited.contains(receiver))
+            return false;
+        EntityRef entityRef = getEntityAt(receiver);
+        SignalLeafComponent signalLeafComponent = entityRef.getComponent(SignalLeafComponent.class);
+        BlockComponent blockComponent = entityRef.getComponent(BlockComponent.class);
+        if (signalLeafComponent == null || blockComponent == null)
+            return false;
+        boolean receives = false;
+        for (Side side : signalLeafComponent.inputs) {
+            long neighbor = SignalPositions.neighbor(receiver, blockComponent.getBlock().getRotation().rotate(side));
+            if (network == null ? neighbor == source : networkModel.getNetwork(neighbor) == network) {
+                receives = true;
+                break;
+            }
+        }
+        if (!receives)
+            return false;
+        if (receiver == origin)
+            return true;
+        visited.add(receiver);
+        if (!signalLeafComponent.outputs.isEmpty())
+            toVisit.add(receiver);
+        return false;
+    }
+
+    /**
+     * @return The number of leaves currently frozen for oscillating
+     */
+    public int getFrozenLeafCount() {
+        return rateLimiter.getFrozenCount();
+    }
+
+    /**
+     * @return The load counters and latencies of the signal system
+     */
+    public SignalMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param networkCount The number of costliest networks to list
+     * @return A human readable report of the metrics
+     */
+    public String getMetricsReport(int networkCount) {
+        String report = metrics.report(networkModel.getCostliestNetworks(networkCount));
+        return report + String.format("%nInput cache: %d hits, %d misses. Transitions: %d emitted, %d suppressed. Compiled circuits: %d (%d gates). Frozen leaves: %d."
+                        + " Suspended chunks: %d (%d leaves, %d delays).",
+                getInputCacheHits(), getInputCacheMisses(), getEmittedTransitions(), getSuppressedTransitions(),
+                circuitEngine.getCircuitCount(), circuitEngine.getCompiledGateCount(), getFrozenLeafCount(),
+                suspendedChunks.getChunkCount(), suspendedChunks.getLeafCount(), suspendedChunks.getDelayCount())
+                + (useStateArena ? String.format(" State arena: %d leaves.", stateArena.size()) : "");
+    }
+
+    private class WorldNodeLookup implements SignalNodeLookup {
+        @Override
+        public boolean isCable(Vector3i position) {
+            return SignalTopologyStore.type(getNode(SignalPositions.pack(position))) == SignalTopologyStore.CABLE;
+        }
+
+        @Override
+        public boolean isLeaf(Vector3i position) {
+            return SignalTopologyStore.type(getNode(SignalPositions.pack(position))) == SignalTopologyStore.LEAF;
+        }
+
+        @Override
+        public int getLeafSides(Vector3i position) {
+            int node = getNode(SignalPositions.pack(position));
+            return SignalTopologyStore.type(node) == SignalTopologyStore.LEAF ? SignalTopologyStore.sides(node) : 0;
+        }
+
+        @Override
+        public int getLeafOutput(Vector3i position, int side) {
+            return getWorldOutput(SignalPositions.pack(position), side);
+        }
+    }
+
+    private class BusNodeLookup implements SignalNodeLookup {
+        @Override
+        public boolean isCable(Vector3i position) {
+            return SignalTopologyStore.type(getNode(SignalPositions.pack(position))) == SignalTopologyStore.BUS_CABLE;
+        }
+
+        @Override
+        public boolean isLeaf(Vector3i position) {
+            return SignalTopologyStore.type(getNode(SignalPositions.pack(position))) == SignalTopologyStore.LEAF;
+        }
+
+        @Override
+        public int getLeafSides(Vector3i position) {
+            int node = getNode(SignalPositions.pack(position));
+            return SignalTopologyStore.type(node) == SignalTopologyStore.LEAF ? SignalTopologyStore.busSides(node) : 0;
+        }
+
+        @Override
+        public int getLeafOutput(Vector3i position, int side) {
+            SignalBusStateComponent signalBusStateComponent = blockEntityRegistry.getBlockEntityAt(position).getComponent(SignalBusStateComponent.class);
+            if (signalBusStateComponent == null)
+                return 0;
+            return signalBusStateComponent.outputs[OUTPUT_INDEX[side]];
+        }
+    }
+
     public interface SignalResponse {
         boolean response(Side targetSide, int distance, EntityRef target);
     }
 
+    /**
+     * The {@link LeafNodeSignalChange} and the arrays it is built from, reused for every notification at one delivery
+     * depth.
+     */
+    private static final class NotificationBuffers {
+        private final byte[] inputs = new byte[SIDES.length];
+        private final int[] busInputs = new int[SIDES.length];
+        private final LeafNodeSignalChange event = new LeafNodeSignalChange(inputs);
+    }
+
     public static class SignalDelayHandler {
         public final long delta;
         public final long currentTime;
@@ -304,15 +1901,22 @@ public class SignalSystem extends BaseComponentSystem implements UpdateSubscribe
 
         @Override
         public int hashCode() {
-            return entityRef.hashCode() + 31 * side.getVector3i().hashCode();
+            return entityRef.hashCode() + 31 * side.ordinal();
         }
     }
 
+    /**
+     * Orders delayed outputs by due time.
+     *
+     * @deprecated Pending delays are ordered by {@link SignalTimingWheel}. Kept only for compatibility with modules that
+     * use it.
+     */
+    @Deprecated
     public static class SignalDelayComparitor implements Comparator<SignalDelayHandler> {
 
         @Override
         public int compare(SignalDelayHandler t1, SignalDelayHandler t2) {
-            return (int) (t1.getTime() - t2.getTime());
+            return Long.compare(t1.getTime(), t2.getTime());
         }
     }
 
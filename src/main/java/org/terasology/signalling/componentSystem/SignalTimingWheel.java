@@ -0,0 +1,228 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A hashed timing wheel holding the pending delayed outputs of {@link SignalSystem}.
+ * <p>
+ * Handlers are hashed into slots by their due time, and indexed by entity and side, so scheduling, rescheduling and
+ * cancelling are constant time. Polling only visits the slots between the previous poll and now.
+ */
+public class SignalTimingWheel {
+    private final long resolution;
+    private final Entry[] slots;
+    private final Map<SignalSystem.SignalDelayHandler, Entry> index = Maps.newHashMap();
+    private final List<Entry> due = Lists.newArrayList();
+    private final List<SignalSystem.SignalDelayHandler> drained = Lists.newArrayList();
+    private long processedTick = Long.MIN_VALUE;
+    private long sequence;
+
+    /**
+     * @param resolution The time covered by a slot, in ms
+     * @param slotCount  The number of slots of the wheel
+     */
+    public SignalTimingWheel(long resolution, int slotCount) {
+        this.resolution = resolution;
+        this.slots = new Entry[slotCount];
+    }
+
+    /**
+     * Schedules a handler, replacing the one pending for the same entity and side if there is one.
+     *
+     * @param handler The handler to schedule
+     */
+    public void schedule(SignalSystem.SignalDelayHandler handler) {
+        cancel(handler);
+        long tick = Math.floorDiv(handler.getTime(), resolution);
+        if (processedTick == Long.MIN_VALUE) {
+            processedTick = tick;
+        } else if (tick < processedTick) {
+            tick = processedTick;
+        }
+        Entry entry = new Entry(handler, sequence++, slotOf(tick));
+        Entry head = slots[entry.slot];
+        entry.next = head;
+        if (head != null) {
+            head.previous = entry;
+        }
+        slots[entry.slot] = entry;
+        index.put(handler, entry);
+    }
+
+    /**
+     * Cancels the handler pending for the same entity and side as the given one.
+     *
+     * @param handler A handler for the entity and side to cancel
+     * @return Whether a handler was pending
+     */
+    public boolean cancel(SignalSystem.SignalDelayHandler handler) {
+        Entry entry = index.remove(handler);
+        if (entry == null) {
+            return false;
+        }
+        unlink(entry);
+        return true;
+    }
+
+    /**
+     * @param handler A handler for the entity and side to look up
+     * @return The handler pending for the same entity and side, or null if there is none
+     */
+    public SignalSystem.SignalDelayHandler getPending(SignalSystem.SignalDelayHandler handler) {
+        Entry entry = index.get(handler);
+        return entry != null ? entry.handler : null;
+    }
+
+    /**
+     * Removes every handler due before the given time.
+     *
+     * @param time The current time, in ms
+     * @return The due handlers, ordered by due time. The list is reused by the next call.
+     */
+    public List<SignalSystem.SignalDelayHandler> pollDue(long time) {
+        drained.clear();
+        long currentTick = Math.floorDiv(time, resolution);
+        if (index.isEmpty()) {
+            processedTick = currentTick;
+            return drained;
+        }
+        long firstTick = processedTick;
+        if (currentTick - firstTick >= slots.length) {
+            firstTick = currentTick - slots.length + 1;
+        }
+        for (long tick = firstTick; tick <= currentTick; tick++) {
+            Entry entry = slots[slotOf(tick)];
+            while (entry != null) {
+                Entry next = entry.next;
+                if (entry.handler.getTime() < time) {
+                    unlink(entry);
+                    index.remove(entry.handler);
+                    due.add(entry);
+                }
+                entry = next;
+            }
+        }
+        // After a pause longer than a turn, the visited slots wrap around, so they are not in due time order.
+        if (!due.isEmpty()) {
+            due.sort((first, second) -> first.handler.getTime() != second.handler.getTime()
+                    ? Long.compare(first.handler.getTime(), second.handler.getTime())
+                    : Long.compare(first.sequence, second.sequence));
+            for (Entry dueEntry : due) {
+                drained.add(dueEntry.handler);
+            }
+            due.clear();
+        }
+        processedTick = currentTick;
+        return drained;
+    }
+
+    /**
+     * Cancels every pending handler matching a filter.
+     *
+     * @param filter The filter of the handlers to cancel
+     * @return The cancelled handlers, ordered by due time
+     */
+    public List<SignalSystem.SignalDelayHandler> removeIf(Predicate<SignalSystem.SignalDelayHandler> filter) {
+        List<Entry> removed = select(filter);
+        List<SignalSystem.SignalDelayHandler> handlers = Lists.newArrayListWithCapacity(removed.size());
+        for (Entry entry : removed) {
+            index.remove(entry.handler);
+            unlink(entry);
+            handlers.add(entry.handler);
+        }
+        return handlers;
+    }
+
+    /**
+     * @return Every pending handler, ordered by due time
+     */
+    public List<SignalSystem.SignalDelayHandler> getPending() {
+        List<Entry> pending = select(handler -> true);
+        List<SignalSystem.SignalDelayHandler> handlers = Lists.newArrayListWithCapacity(pending.size());
+        for (Entry entry : pending) {
+            handlers.add(entry.handler);
+        }
+        return handlers;
+    }
+
+    private List<Entry> select(Predicate<SignalSystem.SignalDelayHandler> filter) {
+        List<Entry> selected = Lists.newArrayList();
+        for (Entry entry : index.values()) {
+            if (filter.test(entry.handler)) {
+                selected.add(entry);
+            }
+        }
+        selected.sort((first, second) -> first.handler.getTime() != second.handler.getTime()
+                ? Long.compare(first.handler.getTime(), second.handler.getTime())
+                : Long.compare(first.sequence, second.sequence));
+        return selected;
+    }
+
+    /**
+     * @return The number of pending handlers
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * Cancels every pending handler.
+     */
+    public void clear() {
+        index.clear();
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+    }
+
+    private int slotOf(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.length);
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.previous != null) {
+            entry.previous.next = entry.next;
+        } else {
+            slots[entry.slot] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.previous = entry.previous;
+        }
+        entry.previous = null;
+        entry.next = null;
+    }
+
+    private static final class Entry {
+        private final SignalSystem.SignalDelayHandler handler;
+        private final long sequence;
+        private final int slot;
+        private Entry previous;
+        private Entry next;
+
+        private Entry(SignalSystem.SignalDelayHandler handler, long sequence, int slot) {
+            this.handler = handler;
+            this.sequence = sequence;
+            this.slot = slot;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import com.google.common.collect.Lists;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import org.terasology.signalling.network.SignalPositions;
+import org.terasology.world.chunks.ChunkConstants;
+
+import java.util.List;
+
+/**
+ * The signal work parked for chunks that are not loaded, by packed chunk position: the leaves that should have been
+ * notified and the delayed outputs that came due. The work is handed back when the chunk loads, so signals reaching an
+ * unloaded region neither create block entities nor fire into it.
+ */
+public class SuspendedSignalChunks {
+    private final TLongObjectMap<Suspension> chunks = new TLongObjectHashMap<>();
+    private int leafCount;
+    private int delayCount;
+
+    /**
+     * @param location The packed position of a block
+     * @return The packed position of the chunk containing the block
+     */
+    public static long chunkOf(long location) {
+        return SignalPositions.pack(SignalPositions.x(location) >> ChunkConstants.CHUNK_POWER.x,
+                SignalPositions.y(location) >> ChunkConstants.CHUNK_POWER.y,
+                SignalPositions.z(location) >> ChunkConstants.CHUNK_POWER.z);
+    }
+
+    /**
+     * Parks a leaf to notify once its chunk loads. A leaf parked several times is only notified once.
+     *
+     * @param location The packed position of the leaf
+     * @return Whether the leaf was not parked yet
+     */
+    public boolean suspendLeaf(long location) {
+        if (!getOrCreate(chunkOf(location)).leaves.add(location)) {
+            return false;
+        }
+        leafCount++;
+        return true;
+    }
+
+    /**
+     * Parks a delayed output that came due while the chunk of its leaf was not loaded.
+     *
+     * @param location The packed position of the leaf
+     * @param handler  The due handler
+     */
+    public void suspendDelay(long location, SignalSystem.SignalDelayHandler handler) {
+        getOrCreate(chunkOf(location)).delays.add(handler);
+        delayCount++;
+    }
+
+    /**
+     * Removes the work parked for a chunk.
+     *
+     * @param chunk The packed chunk position
+     * @return The parked work, or null if there is none
+     */
+    public Suspension resume(long chunk) {
+        Suspension suspension = chunks.remove(chunk);
+        if (suspension != null) {
+            leafCount -= suspension.leaves.size();
+            delayCount -= suspension.delays.size();
+        }
+        return suspension;
+    }
+
+    /**
+     * Adds the parked delayed outputs of every chunk to a list, leaving them parked.
+     *
+     * @param target The list to add to
+     */
+    public void collectDelays(List<SignalSystem.SignalDelayHandler> target) {
+        for (Suspension suspension : chunks.valueCollection()) {
+            target.addAll(suspension.delays);
+        }
+    }
+
+    /**
+     * @return The number of chunks with parked work
+     */
+    public int getChunkCount() {
+        return chunks.size();
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    public int getDelayCount() {
+        return delayCount;
+    }
+
+    public void clear() {
+        chunks.clear();
+        leafCount = 0;
+        delayCount = 0;
+    }
+
+    private Suspension getOrCreate(long chunk) {
+        Suspension suspension = chunks.get(chunk);
+        if (suspension == null) {
+            suspension = new Suspension();
+            chunks.put(chunk, suspension);
+        }
+        return suspension;
+    }
+
+    /**
+     * The work parked for one chunk.
+     */
+    public static final class Suspension {
+        private final TLongSet leaves = new TLongHashSet();
+        private final List<SignalSystem.SignalDelayHandler> delays = Lists.newArrayList();
+
+        /**
+         * @return The packed positions of the parked leaves
+         */
+        public TLongSet getLeaves() {
+            return leaves;
+        }
+
+        /**
+         * @return The parked delayed outputs, in the order they came due
+         */
+        public List<SignalSystem.SignalDelayHandler> getDelays() {
+            return delays;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.components;
+
+import org.terasology.entitySystem.Component;
+import org.terasology.math.Side;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The bus sides of a leaf. Every channel of a bus is one bit of an int: a leaf reads the union of the channels output
+ * by the other leaves of the bus, whatever their distance.
+ */
+public class SignalBusComponent implements Component {
+    public static final int MAX_WIDTH = 32;
+
+    public Set<Side> outputs = EnumSet.noneOf(Side.class);
+    public Set<Side> inputs = EnumSet.noneOf(Side.class);
+    /**
+     * The number of channels the leaf reads and writes, from 1 to {@link #MAX_WIDTH}.
+     */
+    public int width = 8;
+
+    /**
+     * @return The mask of the channels of the leaf
+     */
+    public int getChannelMask() {
+        return width >= MAX_WIDTH ? -1 : (1 << Math.max(1, width)) - 1;
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.components;
+
+import com.google.common.collect.Lists;
+import org.terasology.entitySystem.Component;
+import org.terasology.math.Side;
+import org.terasology.reflection.MappedContainer;
+
+import java.util.List;
+
+/**
+ * The delayed outputs of a leaf that were still pending when its chunk was unloaded. They are stored with the chunk and
+ * scheduled again when it loads.
+ */
+public class SignalPendingOutputComponent implements Component {
+    public List<PendingOutput> outputs = Lists.newArrayList();
+
+    @MappedContainer
+    public static class PendingOutput {
+        /**
+         * The unrotated output side.
+         */
+        public Side side;
+        public byte strength;
+        /**
+         * The game time at which the output was due, in ms.
+         */
+        public long time;
+    }
+}
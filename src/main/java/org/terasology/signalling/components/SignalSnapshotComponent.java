@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.components;
+
+import com.google.common.collect.Lists;
+import org.terasology.entitySystem.Component;
+import org.terasology.math.geom.Vector3i;
+import org.terasology.reflection.MappedContainer;
+
+import java.util.List;
+
+/**
+ * A snapshot of the signal topology and of the inputs last delivered to leaves, kept on the world entity so that a
+ * loaded world does not have to rediscover its cables from the block entities.
+ */
+public class SignalSnapshotComponent implements Component {
+    public List<ChunkSnapshot> chunks = Lists.newArrayList();
+
+    @MappedContainer
+    public static class ChunkSnapshot {
+        public Vector3i chunk;
+        /**
+         * Six bytes per signal block: its index in the chunk and its packed topology node.
+         */
+        public byte[] nodes;
+        /**
+         * Eight bytes per leaf: its index in the chunk and the six inputs it was last notified with.
+         */
+        public byte[] inputs;
+    }
+}
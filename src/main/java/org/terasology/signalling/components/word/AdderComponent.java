@@ -0,0 +1,26 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.components.word;
+
+import org.terasology.entitySystem.Component;
+
+/**
+ * An adder: outputs the sum (or difference) of its two bus inputs, and a signal when it carries (or borrows).
+ */
+public class AdderComponent implements Component {
+    public boolean subtract;
+    public byte strength = 12;
+}
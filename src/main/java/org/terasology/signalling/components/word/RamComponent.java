@@ -0,0 +1,27 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.components.word;
+
+import org.terasology.entitySystem.Component;
+
+/**
+ * A small memory: outputs the word at the address on its address bus, and stores the word on its data bus there when
+ * its write input goes HIGH. Addresses wrap at the size of the memory.
+ */
+public class RamComponent implements Component {
+    public int[] contents = new int[16];
+    public boolean writeHigh;
+}
@@ -15,21 +15,186 @@
  */
 package org.terasology.signalling.event;
 
-import org.terasology.entitySystem.event.AbstractConsumableEvent;
+import com.google.common.collect.Maps;
+import org.terasology.entitySystem.event.ConsumableEvent;
 import org.terasology.math.Side;
-import org.terasology.math.geom.Vector3i;
 
+import java.util.Collections;
 import java.util.Map;
 
-public class LeafNodeSignalChange extends AbstractConsumableEvent {
+/**
+ * Sent to a leaf when the signals on its inputs may have changed.
+ * <p>
+ * Inputs are stored in a six-slot array indexed by the ordinal of the (unrotated) input side. A value of 0 means no
+ * signal, -1 an infinite signal. The event also tells which inputs changed since the leaf was last notified, so that
+ * handlers can skip leaves whose inputs are the same.
+ * <p>
+ * The signal system reuses the event and its arrays for later notifications: the event is only valid while it is
+ * handled, and must not be kept.
+ */
+public class LeafNodeSignalChange implements ConsumableEvent {
+    private static final Side[] SIDES = Side.values();
+
+    private static final int[] NO_BUS_INPUTS = new int[SIDES.length];
+    private static final int ALL_SIDES = 0x3F;
+
+    private byte[] inputs;
+    private int inputCount;
+    private int changedSides;
+    private int[] busInputs;
+    private int busInputSides;
+    private boolean consumed;
+
+    /**
+     * @param inputs The signal strength of every input side, indexed by side ordinal. The array is not copied.
+     */
+    public LeafNodeSignalChange(byte[] inputs) {
+        this(inputs, ALL_SIDES);
+    }
+
+    /**
+     * @param inputs       The signal strength of every input side, indexed by side ordinal. The array is not copied.
+     * @param changedSides The mask of the input sides that changed since the last notification, by side ordinal
+     */
+    public LeafNodeSignalChange(byte[] inputs, int changedSides) {
+        this(inputs, changedSides, NO_BUS_INPUTS, 0);
+    }
 
-    private Map<Side, Integer> inputs;
+    /**
+     * @param inputs        The signal strength of every input side, indexed by side ordinal. The array is not copied.
+     * @param changedSides  The mask of the input sides that changed since the last notification, by side ordinal
+     * @param busInputs     The channels of every bus input side, indexed by side ordinal. The array is not copied.
+     * @param busInputSides The mask of the bus input sides connected to a bus, by side ordinal
+     */
+    public LeafNodeSignalChange(byte[] inputs, int changedSides, int[] busInputs, int busInputSides) {
+        reset(inputs, changedSides, busInputs, busInputSides);
+    }
 
-    public LeafNodeSignalChange(Map<Side, Integer> inputs) {
+    /**
+     * Reuses the event for another notification, and clears its consumed state.
+     *
+     * @param inputs       The signal strength of every input side, indexed by side ordinal. The array is not copied.
+     * @param changedSides The mask of the input sides that changed since the last notification, by side ordinal
+     * @return The event
+     */
+    public LeafNodeSignalChange reset(byte[] inputs, int changedSides) {
+        return reset(inputs, changedSides, NO_BUS_INPUTS, 0);
+    }
+
+    /**
+     * Reuses the event for another notification, and clears its consumed state.
+     *
+     * @param inputs        The signal strength of every input side, indexed by side ordinal. The array is not copied.
+     * @param changedSides  The mask of the input sides that changed since the last notification, by side ordinal
+     * @param busInputs     The channels of every bus input side, indexed by side ordinal. The array is not copied.
+     * @param busInputSides The mask of the bus input sides connected to a bus, by side ordinal
+     * @return The event
+     */
+    public LeafNodeSignalChange reset(byte[] inputs, int changedSides, int[] busInputs, int busInputSides) {
         this.inputs = inputs;
+        this.changedSides = changedSides;
+        this.busInputs = busInputs;
+        this.busInputSides = busInputSides;
+        int count = 0;
+        for (byte input : inputs) {
+            if (input != 0) {
+                count++;
+            }
+        }
+        this.inputCount = count;
+        this.consumed = false;
+        return this;
+    }
+
+    @Override
+    public boolean isConsumed() {
+        return consumed;
+    }
+
+    @Override
+    public void consume() {
+        consumed = true;
+    }
+
+    /**
+     * @return The number of input sides with a signal
+     */
+    public int getInputCount() {
+        return inputCount;
+    }
+
+    /**
+     * @param side An input side of the leaf
+     * @return The strength of the signal on that side, 0 if there is none and -1 if it is infinite
+     */
+    public int getInput(Side side) {
+        return inputs[side.ordinal()];
+    }
+
+    /**
+     * @return The mask of the input sides whose signal changed since the leaf was last notified, by side ordinal. Every
+     * side is marked when the previous inputs are not known, and a side is also marked when a block next to it was
+     * placed or removed, as that changes whether it is connected.
+     */
+    public int getChangedSides() {
+        return changedSides;
+    }
+
+    /**
+     * @param side An input side of the leaf
+     * @return Whether the signal on that side, or whether it is connected, changed since the leaf was last notified
+     */
+    public boolean isInputChanged(Side side) {
+        return (changedSides & 1 << side.ordinal()) != 0;
+    }
+
+    /**
+     * @return Whether any input changed since the leaf was last notified. Bus inputs are not tracked: a leaf with bus
+     * inputs must check them itself.
+     */
+    public boolean hasInputChanges() {
+        return changedSides != 0;
+    }
+
+    /**
+     * @param side A bus input side of the leaf
+     * @return The mask of the channels set on that side
+     */
+    public int getBusInput(Side side) {
+        return busInputs[side.ordinal()];
+    }
+
+    /**
+     * @param side A bus input side of the leaf
+     * @return Whether a bus cable or the bus side of another leaf is next to that side
+     */
+    public boolean isBusInputConnected(Side side) {
+        return (busInputSides & 1 << side.ordinal()) != 0;
+    }
+
+    /**
+     * @return Whether any bus input side is connected
+     */
+    public boolean hasBusInputs() {
+        return busInputSides != 0;
     }
 
+    /**
+     * Builds a map of the input sides with a signal. Prefer {@link #getInputCount()} and {@link #getInput(Side)}, which
+     * do not allocate.
+     *
+     * @return The signal strength of every input side with a signal
+     */
     public Map<Side, Integer> getInputs() {
-        return inputs;
+        if (inputCount == 0) {
+            return Collections.emptyMap();
+        }
+        Map<Side, Integer> result = Maps.newEnumMap(Side.class);
+        for (Side side : SIDES) {
+            if (inputs[side.ordinal()] != 0) {
+                result.put(side, (int) inputs[side.ordinal()]);
+            }
+        }
+        return result;
     }
 }
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.event;
+
+import org.terasology.network.BroadcastEvent;
+import org.terasology.network.NetworkEvent;
+
+/**
+ * Broadcast to clients once per tick with the signal activity that changed during it, encoded by
+ * {@link org.terasology.signalling.componentSystem.SignalDelta}. It is sent to the entity with the
+ * {@link org.terasology.signalling.components.SignalReplicationComponent}.
+ */
+@BroadcastEvent
+public class SignalDeltaEvent extends NetworkEvent {
+    private byte[] delta;
+
+    protected SignalDeltaEvent() {
+    }
+
+    public SignalDeltaEvent(byte[] delta) {
+        this.delta = delta;
+    }
+
+    public byte[] getDelta() {
+        return delta;
+    }
+}
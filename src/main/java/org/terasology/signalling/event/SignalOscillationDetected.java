@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.event;
+
+import org.terasology.entitySystem.event.Event;
+
+/**
+ * Sent to a leaf whose output changed faster than the maximum oscillation frequency, after it has been frozen. While frozen the leaf is not
+ * evaluated, which stops the oscillation; it is evaluated again once the freeze is over.
+ */
+public class SignalOscillationDetected implements Event {
+    private final int transitions;
+    private final boolean feedbackLoop;
+    private final long frozenFor;
+
+    public SignalOscillationDetected(int transitions, boolean feedbackLoop, long frozenFor) {
+        this.transitions = transitions;
+        this.feedbackLoop = feedbackLoop;
+        this.frozenFor = frozenFor;
+    }
+
+    /**
+     * @return The number of times the output of the leaf changed during the detection window
+     */
+    public int getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * @return Whether the outputs of the leaf lead back to its inputs through other gates, as in ring oscillators
+     */
+    public boolean isFeedbackLoop() {
+        return feedbackLoop;
+    }
+
+    /**
+     * @return How long the leaf is frozen for, in ms
+     */
+    public long getFrozenFor() {
+        return frozenFor;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.event;
+
+import org.terasology.network.NetworkEvent;
+import org.terasology.network.OwnerEvent;
+
+/**
+ * Sent to the entity of a client when it connects, with the whole signal activity of the loaded world: every active
+ * output and one cable of every powered network, encoded by
+ * {@link org.terasology.signalling.componentSystem.SignalDelta}. The {@link SignalDeltaEvent}s that follow apply on top
+ * of it.
+ */
+@OwnerEvent
+public class SignalStateEvent extends NetworkEvent {
+    private byte[] state;
+
+    protected SignalStateEvent() {
+    }
+
+    public SignalStateEvent(byte[] state) {
+        this.state = state;
+    }
+
+    public byte[] getState() {
+        return state;
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+import java.util.Arrays;
+
+/**
+ * The leaves of a network as seen from one of its cables, closest first, stored in parallel primitive arrays.
+ * <p>
+ * A cable is 1 away from itself, so a leaf directly attached to the starting cable has a distance of 1. Each leaf is
+ * listed once, with the (world-space) side it is reached on first.
+ * <p>
+ * A list may be bounded: it then only holds the leaves up to {@link #getLimit()} away.
+ */
+public final class LeafDistances {
+    public static final LeafDistances EMPTY = new LeafDistances(0);
+
+    private long[] positions;
+    private byte[] sides;
+    private int[] distances;
+    private int size;
+    private int limit = Integer.MAX_VALUE;
+
+    LeafDistances(int initialCapacity) {
+        positions = new long[initialCapacity];
+        sides = new byte[initialCapacity];
+        distances = new int[initialCapacity];
+    }
+
+    void add(long position, int side, int distance) {
+        if (size == positions.length) {
+            int capacity = Math.max(4, size * 2);
+            positions = Arrays.copyOf(positions, capacity);
+            sides = Arrays.copyOf(sides, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+        }
+        positions[size] = position;
+        sides[size] = (byte) side;
+        distances[size] = distance;
+        size++;
+    }
+
+    void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @return The distance up to which the list holds every leaf, or {@link Integer#MAX_VALUE} if it is complete
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The packed position of the i-th closest leaf
+     */
+    public long getPosition(int index) {
+        return positions[index];
+    }
+
+    /**
+     * @return The ordinal of the side the i-th closest leaf is reached on
+     */
+    public int getSide(int index) {
+        return sides[index];
+    }
+
+    public int getDistance(int index) {
+        return distances[index];
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+/**
+ * A growable FIFO queue of longs backed by a ring buffer. Elements still in the queue can also be read by index, which
+ * allows it to be used as a simple list.
+ */
+public class LongQueue {
+    private long[] elements;
+    private int head;
+    private int size;
+
+    public LongQueue() {
+        this(16);
+    }
+
+    public LongQueue(int initialCapacity) {
+        elements = new long[Math.max(1, Integer.highestOneBit(Math.max(1, initialCapacity - 1)) << 1)];
+    }
+
+    public void add(long value) {
+        if (size == elements.length) {
+            grow();
+        }
+        elements[(head + size) & (elements.length - 1)] = value;
+        size++;
+    }
+
+    /**
+     * Removes the first element. The queue must not be empty.
+     *
+     * @return The removed element
+     */
+    public long poll() {
+        long value = elements[head];
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        return value;
+    }
+
+    /**
+     * @param index The index of the element, from the head of the queue
+     * @return The element
+     */
+    public long get(int index) {
+        return elements[(head + index) & (elements.length - 1)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    private void grow() {
+        long[] grown = new long[elements.length * 2];
+        for (int i = 0; i < size; i++) {
+            grown[i] = get(i);
+        }
+        elements = grown;
+        head = 0;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+/**
+ * A snapshot of the size and walk cost of a network, for diagnostics.
+ */
+public final class NetworkCost {
+    private final long cable;
+    private final int cableCount;
+    private final int leafCount;
+    private final long traversalCost;
+
+    NetworkCost(long cable, int cableCount, int leafCount, long traversalCost) {
+        this.cable = cable;
+        this.cableCount = cableCount;
+        this.leafCount = leafCount;
+        this.traversalCost = traversalCost;
+    }
+
+    /**
+     * @return The packed position of one of the cables of the network
+     */
+    public long getCable() {
+        return cable;
+    }
+
+    public int getCableCount() {
+        return cableCount;
+    }
+
+    public int getLeafCount() {
+        return leafCount;
+    }
+
+    /**
+     * @return The number of cables visited by the walks of the network
+     */
+    public long getTraversalCost() {
+        return traversalCost;
+    }
+}
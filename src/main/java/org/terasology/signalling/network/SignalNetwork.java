@@ -0,0 +1,226 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.Arrays;
+
+/**
+ * A set of connected cables together with the leaves they join.
+ * <p>
+ * Networks form a union-find forest: when cables join two networks, one of them is linked below the other, and only
+ * the root of a tree holds the leaves and cached distances of the whole network. Use {@link #find()} to get the root.
+ * <p>
+ * The root also caches the resolved input of every (leaf, side) queried through the network. Topology changes drop
+ * both caches, while output changes only need {@link #invalidateInputs()}.
+ */
+public class SignalNetwork {
+    /**
+     * Returned by {@link #getCachedInput} when the input has not been resolved since the last invalidation.
+     */
+    public static final int UNRESOLVED = Integer.MIN_VALUE;
+    private static final byte UNRESOLVED_INPUT = Byte.MIN_VALUE;
+    private static final int SIDE_COUNT = 6;
+
+    private SignalNetwork parent = this;
+    private int cableCount;
+    private TLongIntMap leaves = new TLongIntHashMap();
+    private final TLongObjectMap<LeafDistances> leafDistances = new TLongObjectHashMap<>();
+    private final TLongObjectMap<byte[]> resolvedInputs = new TLongObjectHashMap<>();
+    private int maxOutput;
+    private long traversalCost;
+    private boolean maxOutputKnown;
+
+    SignalNetwork() {
+    }
+
+    /**
+     * @return The network this one has been merged into, or itself if it has not been merged
+     */
+    public SignalNetwork find() {
+        SignalNetwork root = this;
+        while (root.parent != root) {
+            root = root.parent;
+        }
+        SignalNetwork node = this;
+        while (node.parent != root) {
+            SignalNetwork next = node.parent;
+            node.parent = root;
+            node = next;
+        }
+        return root;
+    }
+
+    /**
+     * @return The number of cables in this network
+     */
+    public int getCableCount() {
+        return cableCount;
+    }
+
+    /**
+     * @return The packed positions of all leaves connected to this network, mapped to the masks of the world-space
+     * sides they connect on. Must not be modified.
+     */
+    public TLongIntMap getLeaves() {
+        return leaves;
+    }
+
+    /**
+     * @return The number of cables visited by the walks of this network (and the networks merged into it)
+     */
+    public long getTraversalCost() {
+        return traversalCost;
+    }
+
+    void addTraversalCost(long cost) {
+        traversalCost += cost;
+    }
+
+    void addCables(int count) {
+        cableCount += count;
+    }
+
+    void addLeafSide(long leaf, int side) {
+        int sides = leaves.get(leaf);
+        if (!SignalPositions.hasSide(sides, side)) {
+            leaves.put(leaf, sides | (1 << side));
+            invalidateDistances();
+        }
+    }
+
+    boolean removeLeafSide(long leaf, int side) {
+        int sides = leaves.get(leaf);
+        if (!SignalPositions.hasSide(sides, side)) {
+            return false;
+        }
+        sides &= ~(1 << side);
+        if (sides == 0) {
+            leaves.remove(leaf);
+        } else {
+            leaves.put(leaf, sides);
+        }
+        invalidateDistances();
+        return true;
+    }
+
+    /**
+     * Links the smaller of the two networks below the larger one.
+     *
+     * @return The root of the merged network
+     */
+    static SignalNetwork union(SignalNetwork first, SignalNetwork second) {
+        SignalNetwork larger = first.find();
+        SignalNetwork smaller = second.find();
+        if (larger == smaller) {
+            return larger;
+        }
+        if (larger.cableCount < smaller.cableCount) {
+            SignalNetwork swap = larger;
+            larger = smaller;
+            smaller = swap;
+        }
+        smaller.parent = larger;
+        larger.cableCount += smaller.cableCount;
+        larger.traversalCost += smaller.traversalCost;
+        for (TLongIntIterator it = smaller.leaves.iterator(); it.hasNext(); ) {
+            it.advance();
+            larger.leaves.put(it.key(), larger.leaves.get(it.key()) | it.value());
+        }
+        smaller.leaves = new TLongIntHashMap();
+        smaller.invalidateDistances();
+        larger.invalidateDistances();
+        return larger;
+    }
+
+    LeafDistances getCachedLeafDistances(long startingCable) {
+        return leafDistances.get(startingCable);
+    }
+
+    void cacheLeafDistances(long startingCable, LeafDistances distances) {
+        leafDistances.put(startingCable, distances);
+    }
+
+    void invalidateDistances() {
+        leafDistances.clear();
+        resolvedInputs.clear();
+        maxOutputKnown = false;
+    }
+
+    boolean isMaxOutputKnown() {
+        return maxOutputKnown;
+    }
+
+    int getMaxOutput() {
+        return maxOutput;
+    }
+
+    void setMaxOutput(int maxOutput) {
+        this.maxOutput = maxOutput;
+        maxOutputKnown = true;
+    }
+
+    /**
+     * Updates the strongest output of the network after the output of one of its leaves changed. A raised output is
+     * applied directly, a lowered one makes the network rescan its leaves on the next query.
+     *
+     * @param strength The new output strength, -1 for an infinite signal
+     */
+    public void outputChanged(int strength) {
+        if (maxOutputKnown && maxOutput != -1 && (strength == -1 || strength > maxOutput)) {
+            maxOutput = strength;
+        } else if (strength != maxOutput) {
+            maxOutputKnown = false;
+        }
+    }
+
+    /**
+     * @param leaf The packed position of the receiving leaf
+     * @param side The ordinal of the world-space side of the leaf
+     * @return The cached strength arriving on the side, or {@link #UNRESOLVED}
+     */
+    public int getCachedInput(long leaf, int side) {
+        byte[] inputs = resolvedInputs.get(leaf);
+        return inputs == null || inputs[side] == UNRESOLVED_INPUT ? UNRESOLVED : inputs[side];
+    }
+
+    /**
+     * Caches the strength arriving on a side of a leaf, until the next output or topology change in this network.
+     */
+    public void cacheInput(long leaf, int side, int strength) {
+        byte[] inputs = resolvedInputs.get(leaf);
+        if (inputs == null) {
+            inputs = new byte[SIDE_COUNT];
+            Arrays.fill(inputs, UNRESOLVED_INPUT);
+            resolvedInputs.put(leaf, inputs);
+        }
+        inputs[side] = (byte) strength;
+    }
+
+    /**
+     * Drops the cached inputs, keeping their storage. To be called whenever the output of a leaf of the network changes.
+     */
+    public void invalidateInputs() {
+        for (byte[] inputs : resolvedInputs.valueCollection()) {
+            Arrays.fill(inputs, UNRESOLVED_INPUT);
+        }
+    }
+}
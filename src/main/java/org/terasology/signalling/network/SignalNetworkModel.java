@@ -0,0 +1,739 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import gnu.trove.impl.Constants;
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.iterator.TLongObjectIterator;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import org.terasology.math.geom.Vector3i;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the cable networks of the world, so that signal queries do not have to walk the cables block by block.
+ * <p>
+ * Networks are discovered through the {@link SignalNodeLookup} the first time one of their cables is queried. After
+ * that they are kept up to date incrementally: placing a cable merges the networks around it, and removing one only
+ * re-explores the network it belonged to, stopping as soon as the pieces left behind are known.
+ * <p>
+ * Positions are packed with {@link SignalPositions}. Queries on known networks with cached distances do not allocate.
+ */
+public class SignalNetworkModel {
+    private static final int SIDE_COUNT = 6;
+    private static final long NO_SOURCE = Long.MIN_VALUE;
+
+    private final SignalNodeLookup lookup;
+    private final TLongObjectMap<SignalNetwork> owners = new TLongObjectHashMap<>();
+    private final Vector3i scratch = new Vector3i();
+    private final LongQueue frontier = new LongQueue();
+    private final TLongIntMap visited = newIndexMap();
+    private final TLongIntMap reachedLeaves = newIndexMap();
+    /**
+     * The state of every cable reached by {@link #resolveNetworkInputs}: its index in the arrays below.
+     */
+    private final TLongIntMap signalIndex = newIndexMap();
+    private int[] bestStrengths = new int[16];
+    private long[] bestSources = new long[16];
+    private int[] secondStrengths = new int[16];
+    /**
+     * The signals waiting to spread, bucketed by strength: the cables and the leaves they come from.
+     */
+    private LongQueue[] bucketCables = new LongQueue[0];
+    private LongQueue[] bucketSources = new LongQueue[0];
+    private long inputCacheHits;
+    private long inputCacheMisses;
+    private long traversals;
+    private long visitedCables;
+
+    public SignalNetworkModel(SignalNodeLookup lookup) {
+        this.lookup = lookup;
+    }
+
+    /**
+     * @param cable The packed position of a cable
+     * @return The network the cable belongs to, or null if there is no cable at the position
+     */
+    public SignalNetwork getNetwork(long cable) {
+        SignalNetwork owner = owners.get(cable);
+        if (owner != null) {
+            return owner.find();
+        }
+        if (lookup.isCable(SignalPositions.unpack(cable, scratch))) {
+            return discover(cable);
+        }
+        return null;
+    }
+
+    /**
+     * Returns every leaf reachable from the given cable, ordered by distance. The result is cached in the network until
+     * its topology changes.
+     *
+     * @param startingCable The packed position of a cable
+     * @return The leaves of the cable's network, or an empty result if there is no cable at the position
+     */
+    public LeafDistances getLeafDistances(long startingCable) {
+        return getLeafDistances(startingCable, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the leaves reachable from the given cable up to a distance, ordered by distance. The walk stops at the
+     * given distance, so the result may not hold farther leaves; a cached result computed for a farther distance may
+     * hold more.
+     *
+     * @param startingCable The packed position of a cable
+     * @param maxDistance   The distance up to which leaves are needed
+     * @return The leaves of the cable's network, or an empty result if there is no cable at the position
+     */
+    public LeafDistances getLeafDistances(long startingCable, int maxDistance) {
+        if (maxDistance < 1) {
+            return LeafDistances.EMPTY;
+        }
+        SignalNetwork network = getNetwork(startingCable);
+        if (network == null) {
+            return LeafDistances.EMPTY;
+        }
+        LeafDistances result = network.getCachedLeafDistances(startingCable);
+        if (result == null || result.getLimit() < maxDistance) {
+            result = computeLeafDistances(network, startingCable, maxDistance);
+            network.cacheLeafDistances(startingCable, result);
+        }
+        return result;
+    }
+
+    /**
+     * Resolves the strength of the signal arriving at a side of a location: the output of a leaf directly next to it, or
+     * the strongest output minus distance through the network on that side. The first query after an output or topology
+     * change of a network resolves the inputs of all its leaves at once, and caches them until the next change.
+     *
+     * @param location The packed location of the receiving leaf
+     * @param side     The ordinal of the world-space side to resolve
+     * @return The strongest signal arriving on the side, 0 if there is none and -1 if it is infinite
+     */
+    public int resolveInput(long location, int side) {
+        long start = SignalPositions.neighbor(location, side);
+        SignalPositions.unpack(start, scratch);
+        if (lookup.isLeaf(scratch)) {
+            int outputStrength = lookup.getLeafOutput(scratch, SignalPositions.reverse(side));
+            return outputStrength == -1 ? -1 : Math.max(0, outputStrength);
+        }
+
+        SignalNetwork network = getNetwork(start);
+        if (network == null) {
+            return 0;
+        }
+        int cached = network.getCachedInput(location, side);
+        if (cached != SignalNetwork.UNRESOLVED) {
+            inputCacheHits++;
+            return cached;
+        }
+        inputCacheMisses++;
+
+        resolveNetworkInputs(network);
+        cached = network.getCachedInput(location, side);
+        if (cached != SignalNetwork.UNRESOLVED) {
+            return cached;
+        }
+
+        // The location is not a leaf of the network: walk from it. Only leaves closer than the strongest output of the network can send a positive signal.
+        int maxOutput = getMaxOutput(network);
+        int distanceCap = maxOutput == -1 ? Integer.MAX_VALUE : maxOutput - 1;
+        LeafDistances leaves = getLeafDistances(start, distanceCap);
+        int strength = 0;
+        for (int i = 0; i < leaves.size(); i++) {
+            if (leaves.getDistance(i) > distanceCap) {
+                break;
+            }
+            long leaf = leaves.getPosition(i);
+            if (leaf == location) {
+                continue;
+            }
+            int outputStrength = lookup.getLeafOutput(SignalPositions.unpack(leaf, scratch), leaves.getSide(i));
+            if (outputStrength == -1) {
+                strength = -1;
+                break;
+            }
+            int delta = outputStrength - leaves.getDistance(i);
+            if (delta > strength) {
+                strength = delta;
+            }
+        }
+        network.cacheInput(location, side, strength);
+        return strength;
+    }
+
+    /**
+     * Resolves the inputs of every leaf side of a network in a single walk starting from all the leaves outputting into
+     * it, and caches them in the network. Strengths fade by one per cable, so the signals are spread in decreasing order
+     * of strength, and every cable keeps the two strongest signals coming from different leaves: a leaf does not receive
+     * its own output.
+     *
+     * @param network A network root
+     */
+    private void resolveNetworkInputs(SignalNetwork network) {
+        TLongIntMap leaves = network.getLeaves();
+        signalIndex.clear();
+        long infiniteSource = NO_SOURCE;
+        int infiniteSources = 0;
+        int maxStrength = 0;
+        for (TLongIntIterator it = leaves.iterator(); it.hasNext(); ) {
+            it.advance();
+            long leaf = it.key();
+            int sides = it.value();
+            SignalPositions.unpack(leaf, scratch);
+            for (int side = 0; side < SIDE_COUNT; side++) {
+                if (!SignalPositions.hasSide(sides, side)) {
+                    continue;
+                }
+                int output = lookup.getLeafOutput(scratch, side);
+                if (output == -1) {
+                    if (infiniteSource != leaf) {
+                        infiniteSources++;
+                        infiniteSource = leaf;
+                    }
+                } else if (output > 1) {
+                    // The cable next to the leaf is the first one the signal crosses.
+                    addSignal(SignalPositions.neighbor(leaf, side), leaf, output - 1);
+                    maxStrength = Math.max(maxStrength, output - 1);
+                }
+            }
+        }
+
+        int visitedCount = 0;
+        if (infiniteSources < 2) {
+            for (int strength = maxStrength; strength > 0; strength--) {
+                LongQueue cables = bucketCables[strength];
+                LongQueue sources = bucketSources[strength];
+                while (!cables.isEmpty()) {
+                    long cable = cables.poll();
+                    long source = sources.poll();
+                    if (!acceptSignal(cable, source, strength)) {
+                        continue;
+                    }
+                    visitedCount++;
+                    if (strength == 1) {
+                        continue;
+                    }
+                    for (int side = 0; side < SIDE_COUNT; side++) {
+                        long neighbor = SignalPositions.neighbor(cable, side);
+                        if (belongsTo(neighbor, network)) {
+                            addSignal(neighbor, source, strength - 1);
+                        }
+                    }
+                }
+            }
+        } else {
+            for (int strength = maxStrength; strength > 0; strength--) {
+                bucketCables[strength].clear();
+                bucketSources[strength].clear();
+            }
+        }
+
+        for (TLongIntIterator it = leaves.iterator(); it.hasNext(); ) {
+            it.advance();
+            long leaf = it.key();
+            int sides = it.value();
+            for (int side = 0; side < SIDE_COUNT; side++) {
+                if (!SignalPositions.hasSide(sides, side)) {
+                    continue;
+                }
+                int strength;
+                if (infiniteSources > 1 || (infiniteSources == 1 && infiniteSource != leaf)) {
+                    strength = -1;
+                } else {
+                    int index = signalIndex.get(SignalPositions.neighbor(leaf, side));
+                    if (index < 0) {
+                        strength = 0;
+                    } else {
+                        strength = bestSources[index] != leaf ? bestStrengths[index] : secondStrengths[index];
+                    }
+                }
+                network.cacheInput(leaf, side, strength);
+            }
+        }
+        traversals++;
+        visitedCables += visitedCount;
+        network.addTraversalCost(visitedCount);
+    }
+
+    private void addSignal(long cable, long source, int strength) {
+        int index = signalIndex.get(cable);
+        if (index >= 0 && (secondStrengths[index] > 0 || bestSources[index] == source)) {
+            // The cable already has its two signals, or a stronger one from the same leaf.
+            return;
+        }
+        if (strength >= bucketCables.length) {
+            int oldLength = bucketCables.length;
+            bucketCables = Arrays.copyOf(bucketCables, strength + 1);
+            bucketSources = Arrays.copyOf(bucketSources, strength + 1);
+            for (int i = oldLength; i <= strength; i++) {
+                bucketCables[i] = new LongQueue();
+                bucketSources[i] = new LongQueue();
+            }
+        }
+        bucketCables[strength].add(cable);
+        bucketSources[strength].add(source);
+    }
+
+    /**
+     * @return Whether the signal is one of the two strongest from different leaves at the cable
+     */
+    private boolean acceptSignal(long cable, long source, int strength) {
+        int index = signalIndex.get(cable);
+        if (index < 0) {
+            index = signalIndex.size();
+            if (index == bestStrengths.length) {
+                bestStrengths = Arrays.copyOf(bestStrengths, index * 2);
+                bestSources = Arrays.copyOf(bestSources, index * 2);
+                secondStrengths = Arrays.copyOf(secondStrengths, index * 2);
+            }
+            signalIndex.put(cable, index);
+            bestStrengths[index] = strength;
+            bestSources[index] = source;
+            secondStrengths[index] = 0;
+            return true;
+        }
+        if (secondStrengths[index] > 0 || bestSources[index] == source) {
+            return false;
+        }
+        secondStrengths[index] = strength;
+        return true;
+    }
+
+    /**
+     * Resolves the channels arriving at a side of a location through a bus: the output of a leaf directly next to it,
+     * or the union of the outputs of every other leaf of the network on that side. Channels do not fade with distance,
+     * so one scan of the leaves of the network resolves all of them, without walking its cables.
+     *
+     * @param location The packed location of the receiving leaf
+     * @param side     The ordinal of the world-space side to resolve
+     * @return The mask of the channels set on the side
+     */
+    public int resolveChannels(long location, int side) {
+        long start = SignalPositions.neighbor(location, side);
+        SignalPositions.unpack(start, scratch);
+        if (lookup.isLeaf(scratch)) {
+            return lookup.getLeafOutput(scratch, SignalPositions.reverse(side));
+        }
+
+        SignalNetwork network = getNetwork(start);
+        if (network == null) {
+            return 0;
+        }
+        int channels = 0;
+        for (TLongIntIterator it = network.getLeaves().iterator(); it.hasNext(); ) {
+            it.advance();
+            if (it.key() == location) {
+                continue;
+            }
+            SignalPositions.unpack(it.key(), scratch);
+            int sides = it.value();
+            for (int leafSide = 0; leafSide < SIDE_COUNT; leafSide++) {
+                if (SignalPositions.hasSide(sides, leafSide)) {
+                    channels |= lookup.getLeafOutput(scratch, leafSide);
+                }
+            }
+        }
+        return channels;
+    }
+
+    /**
+     * Updates the caches of the network on a side of a leaf whose output on that side changed.
+     *
+     * @param leaf     The packed position of the leaf
+     * @param side     The ordinal of the world-space side of the changed output
+     * @param strength The new output strength
+     */
+    public void outputChanged(long leaf, int side, int strength) {
+        SignalNetwork owner = owners.get(SignalPositions.neighbor(leaf, side));
+        if (owner != null) {
+            SignalNetwork network = owner.find();
+            network.invalidateInputs();
+            network.outputChanged(strength);
+        }
+    }
+
+    /**
+     * @return The number of inputs resolved from the per-network cache since the last reset
+     */
+    public long getInputCacheHits() {
+        return inputCacheHits;
+    }
+
+    /**
+     * @return The number of inputs resolved by walking the network since the last reset
+     */
+    public long getInputCacheMisses() {
+        return inputCacheMisses;
+    }
+
+    public void resetInputCacheCounters() {
+        inputCacheHits = 0;
+        inputCacheMisses = 0;
+    }
+
+    /**
+     * Returns the strongest output of the leaves of a network into it. It bounds every search: no leaf farther than
+     * that from a cable can send a signal through it.
+     *
+     * @param network A network root
+     * @return The strongest output, -1 if a leaf outputs an infinite signal
+     */
+    public int getMaxOutput(SignalNetwork network) {
+        if (!network.isMaxOutputKnown()) {
+            int maxOutput = 0;
+            for (TLongIntIterator it = network.getLeaves().iterator(); it.hasNext() && maxOutput != -1; ) {
+                it.advance();
+                SignalPositions.unpack(it.key(), scratch);
+                int sides = it.value();
+                for (int side = 0; side < SIDE_COUNT; side++) {
+                    if (SignalPositions.hasSide(sides, side)) {
+                        int output = lookup.getLeafOutput(scratch, side);
+                        if (output == -1) {
+                            maxOutput = -1;
+                            break;
+                        }
+                        maxOutput = Math.max(maxOutput, output);
+                    }
+                }
+            }
+            network.setMaxOutput(maxOutput);
+        }
+        return network.getMaxOutput();
+    }
+
+    /**
+     * Adds a newly placed cable, merging the networks it connects.
+     *
+     * @param position The packed position of the cable
+     */
+    public void cableAdded(long position) {
+        if (!owners.containsKey(position)) {
+            discover(position);
+        }
+    }
+
+    /**
+     * Removes a cable, splitting its network if the cable was the only link between some of its parts.
+     *
+     * @param position The packed position of the removed cable
+     */
+    public void cableRemoved(long position) {
+        SignalNetwork owner = owners.remove(position);
+        if (owner == null) {
+            return;
+        }
+        SignalNetwork root = owner.find();
+        root.addCables(-1);
+        root.invalidateDistances();
+
+        LongQueue branches = new LongQueue(SIDE_COUNT);
+        for (int side = 0; side < SIDE_COUNT; side++) {
+            long neighbor = SignalPositions.neighbor(position, side);
+            root.removeLeafSide(neighbor, SignalPositions.reverse(side));
+            if (belongsTo(neighbor, root)) {
+                branches.add(neighbor);
+            }
+        }
+        if (branches.size() > 1) {
+            split(root, branches);
+        }
+    }
+
+    /**
+     * Connects a newly placed leaf to the known networks around it.
+     *
+     * @param position The packed position of the leaf
+     */
+    public void leafAdded(long position) {
+        int sides = lookup.getLeafSides(SignalPositions.unpack(position, scratch));
+        for (int side = 0; side < SIDE_COUNT; side++) {
+            if (SignalPositions.hasSide(sides, side)) {
+                SignalNetwork owner = owners.get(SignalPositions.neighbor(position, side));
+                if (owner != null) {
+                    owner.find().addLeafSide(position, side);
+                }
+            }
+        }
+    }
+
+    /**
+     * Disconnects a removed leaf from the networks around it.
+     *
+     * @param position The packed position of the removed leaf
+     */
+    public void leafRemoved(long position) {
+        for (int side = 0; side < SIDE_COUNT; side++) {
+            SignalNetwork owner = owners.get(SignalPositions.neighbor(position, side));
+            if (owner != null) {
+                owner.find().removeLeafSide(position, side);
+            }
+        }
+    }
+
+    /**
+     * @return The number of walks over cables (discoveries, splits and distance computations) since the model was created
+     */
+    public long getTraversalCount() {
+        return traversals;
+    }
+
+    /**
+     * @return The number of cables visited by those walks
+     */
+    public long getVisitedCableCount() {
+        return visitedCables;
+    }
+
+    /**
+     * Lists the known networks whose walks visited the most cables. Visits every known cable, so it is meant for
+     * diagnostics rather than for every tick.
+     *
+     * @param count The maximum number of networks to return
+     * @return The costliest networks, most expensive first
+     */
+    public List<NetworkCost> getCostliestNetworks(int count) {
+        Map<SignalNetwork, Long> roots = Maps.newHashMap();
+        for (TLongObjectIterator<SignalNetwork> it = owners.iterator(); it.hasNext(); ) {
+            it.advance();
+            roots.putIfAbsent(it.value().find(), it.key());
+        }
+        List<NetworkCost> costs = Lists.newArrayList();
+        for (Map.Entry<SignalNetwork, Long> root : roots.entrySet()) {
+            SignalNetwork network = root.getKey();
+            costs.add(new NetworkCost(root.getValue(), network.getCableCount(), network.getLeaves().size(), network.getTraversalCost()));
+        }
+        costs.sort((first, second) -> Long.compare(second.getTraversalCost(), first.getTraversalCost()));
+        return costs.size() > count ? Lists.newArrayList(costs.subList(0, count)) : costs;
+    }
+
+    /**
+     * Forgets every known network.
+     */
+    public void clear() {
+        owners.clear();
+    }
+
+    private boolean belongsTo(long position, SignalNetwork root) {
+        SignalNetwork owner = owners.get(position);
+        return owner != null && owner.find() == root;
+    }
+
+    private SignalNetwork discover(long start) {
+        SignalNetwork network = new SignalNetwork();
+        LongQueue toVisit = new LongQueue();
+        int visitedCount = 0;
+
+        owners.put(start, network);
+        network.addCables(1);
+        toVisit.add(start);
+        while (!toVisit.isEmpty()) {
+            long cable = toVisit.poll();
+            visitedCount++;
+            for (int side = 0; side < SIDE_COUNT; side++) {
+                long neighbor = SignalPositions.neighbor(cable, side);
+                SignalNetwork owner = owners.get(neighbor);
+                if (owner != null) {
+                    network = SignalNetwork.union(network, owner);
+                    continue;
+                }
+                SignalPositions.unpack(neighbor, scratch);
+                if (lookup.isCable(scratch)) {
+                    owners.put(neighbor, network);
+                    network.addCables(1);
+                    toVisit.add(neighbor);
+                } else if (SignalPositions.hasSide(lookup.getLeafSides(scratch), SignalPositions.reverse(side))) {
+                    network.addLeafSide(neighbor, SignalPositions.reverse(side));
+                }
+            }
+        }
+        traversals++;
+        visitedCables += visitedCount;
+        network = network.find();
+        network.addTraversalCost(visitedCount);
+        return network;
+    }
+
+    /**
+     * Explores the branches left by a removed cable side by side, one cable per branch at a time. Branches that meet are
+     * still connected; once at most one group of branches is still growing, every finished group is a separate
+     * network, and the one still growing (or the largest one) keeps the original network.
+     */
+    private void split(SignalNetwork root, LongQueue branches) {
+        int count = branches.size();
+        int[] groups = new int[count];
+        LongQueue[] frontiers = new LongQueue[count];
+        LongQueue[] members = new LongQueue[count];
+        TLongIntMap labels = newIndexMap();
+        for (int i = 0; i < count; i++) {
+            groups[i] = i;
+            frontiers[i] = new LongQueue();
+            frontiers[i].add(branches.get(i));
+            members[i] = new LongQueue();
+            members[i].add(branches.get(i));
+            labels.put(branches.get(i), i);
+        }
+
+        int kept;
+        while (true) {
+            for (int i = 0; i < count; i++) {
+                if (frontiers[i].isEmpty()) {
+                    continue;
+                }
+                long cable = frontiers[i].poll();
+                for (int side = 0; side < SIDE_COUNT; side++) {
+                    long neighbor = SignalPositions.neighbor(cable, side);
+                    if (!belongsTo(neighbor, root)) {
+                        continue;
+                    }
+                    int label = labels.get(neighbor);
+                    if (label < 0) {
+                        labels.put(neighbor, i);
+                        frontiers[i].add(neighbor);
+                        members[i].add(neighbor);
+                    } else {
+                        groups[findGroup(groups, label)] = findGroup(groups, i);
+                    }
+                }
+            }
+
+            int distinct = 0;
+            int growing = 0;
+            int growingGroup = -1;
+            boolean[] seen = new boolean[count];
+            boolean[] grows = new boolean[count];
+            for (int i = 0; i < count; i++) {
+                int group = findGroup(groups, i);
+                if (!seen[group]) {
+                    seen[group] = true;
+                    distinct++;
+                }
+                if (!frontiers[i].isEmpty() && !grows[group]) {
+                    grows[group] = true;
+                    growing++;
+                    growingGroup = group;
+                }
+            }
+            if (distinct == 1) {
+                traversals++;
+                visitedCables += labels.size();
+                root.addTraversalCost(labels.size());
+                return;
+            }
+            if (growing <= 1) {
+                kept = growingGroup;
+                break;
+            }
+        }
+
+        if (kept < 0) {
+            int[] sizes = new int[count];
+            for (int i = 0; i < count; i++) {
+                sizes[findGroup(groups, i)] += members[i].size();
+            }
+            kept = 0;
+            for (int i = 1; i < count; i++) {
+                if (sizes[i] > sizes[kept]) {
+                    kept = i;
+                }
+            }
+        }
+        traversals++;
+        visitedCables += labels.size();
+        root.addTraversalCost(labels.size());
+
+        SignalNetwork[] pieces = new SignalNetwork[count];
+        for (int i = 0; i < count; i++) {
+            int group = findGroup(groups, i);
+            if (group == kept) {
+                continue;
+            }
+            if (pieces[group] == null) {
+                pieces[group] = new SignalNetwork();
+            }
+            SignalNetwork piece = pieces[group];
+            for (int m = 0; m < members[i].size(); m++) {
+                long cable = members[i].get(m);
+                owners.put(cable, piece);
+                for (int side = 0; side < SIDE_COUNT; side++) {
+                    long neighbor = SignalPositions.neighbor(cable, side);
+                    if (root.removeLeafSide(neighbor, SignalPositions.reverse(side))) {
+                        piece.addLeafSide(neighbor, SignalPositions.reverse(side));
+                    }
+                }
+            }
+            piece.addCables(members[i].size());
+            root.addCables(-members[i].size());
+        }
+    }
+
+    private static int findGroup(int[] groups, int index) {
+        while (groups[index] != index) {
+            groups[index] = groups[groups[index]];
+            index = groups[index];
+        }
+        return index;
+    }
+
+    private LeafDistances computeLeafDistances(SignalNetwork network, long startingCable, int maxDistance) {
+        LeafDistances result = new LeafDistances(Math.max(4, network.getLeaves().size()));
+        result.setLimit(maxDistance);
+        TLongIntMap leaves = network.getLeaves();
+        visited.clear();
+        reachedLeaves.clear();
+        frontier.clear();
+
+        visited.put(startingCable, 1);
+        frontier.add(startingCable);
+        while (!frontier.isEmpty()) {
+            long cable = frontier.poll();
+            int distance = visited.get(cable);
+            for (int side = 0; side < SIDE_COUNT; side++) {
+                long neighbor = SignalPositions.neighbor(cable, side);
+                if (belongsTo(neighbor, network)) {
+                    if (distance < maxDistance && !visited.containsKey(neighbor)) {
+                        visited.put(neighbor, distance + 1);
+                        frontier.add(neighbor);
+                    }
+                } else {
+                    int leafSide = SignalPositions.reverse(side);
+                    if (SignalPositions.hasSide(leaves.get(neighbor), leafSide) && !reachedLeaves.containsKey(neighbor)) {
+                        reachedLeaves.put(neighbor, distance);
+                        result.add(neighbor, leafSide, distance);
+                    }
+                }
+            }
+        }
+        traversals++;
+        visitedCables += visited.size();
+        network.addTraversalCost(visited.size());
+        return result;
+    }
+
+    /**
+     * @return A map of packed positions to indices or distances, returning -1 for missing positions
+     */
+    private static TLongIntMap newIndexMap() {
+        return new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, -1);
+    }
+}
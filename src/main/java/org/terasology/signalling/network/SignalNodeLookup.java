@@ -0,0 +1,52 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Read access to the signal blocks of the world, used by {@link SignalNetworkModel} to discover the cables and leaves of
+ * a network the first time it is needed.
+ * <p>
+ * The positions passed in are scratch vectors owned by the caller; implementations must not keep them.
+ */
+public interface SignalNodeLookup {
+    /**
+     * @param position The world position to check
+     * @return Whether the block at the position is a cable
+     */
+    boolean isCable(Vector3i position);
+
+    /**
+     * @param position The world position to check
+     * @return Whether the block at the position is a signal leaf (switch, gate, lamp...)
+     */
+    boolean isLeaf(Vector3i position);
+
+    /**
+     * @param position The world position of a leaf
+     * @return The mask of world-space (already rotated) sides the leaf connects on, see {@link SignalPositions}, or 0 if
+     * the position is not a leaf
+     */
+    int getLeafSides(Vector3i position);
+
+    /**
+     * @param position The world position of a leaf
+     * @param side     The ordinal of the world-space side
+     * @return The strength the leaf outputs on the side, -1 for an infinite signal
+     */
+    int getLeafOutput(Vector3i position, int side);
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+import org.terasology.math.Side;
+import org.terasology.math.geom.Vector3i;
+
+/**
+ * Packs block positions into a single long, 21 bits per axis, so that they can be stored and compared without
+ * allocating vectors. Coordinates must lie within [-2^20, 2^20).
+ * <p>
+ * Sides are represented by their ordinal, and sets of sides by masks with bit {@code 1 << side.ordinal()} set.
+ */
+public final class SignalPositions {
+    public static final int ALL_SIDES = 0x3F;
+
+    private static final long AXIS_MASK = (1L << 21) - 1;
+    private static final Side[] SIDES = Side.values();
+    private static final int[] OFFSET_X = new int[SIDES.length];
+    private static final int[] OFFSET_Y = new int[SIDES.length];
+    private static final int[] OFFSET_Z = new int[SIDES.length];
+    private static final int[] REVERSE = new int[SIDES.length];
+
+    static {
+        for (Side side : SIDES) {
+            Vector3i offset = side.getVector3i();
+            OFFSET_X[side.ordinal()] = offset.x;
+            OFFSET_Y[side.ordinal()] = offset.y;
+            OFFSET_Z[side.ordinal()] = offset.z;
+            REVERSE[side.ordinal()] = side.reverse().ordinal();
+        }
+    }
+
+    private SignalPositions() {
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((x & AXIS_MASK) << 42) | ((y & AXIS_MASK) << 21) | (z & AXIS_MASK);
+    }
+
+    public static long pack(Vector3i position) {
+        return pack(position.x, position.y, position.z);
+    }
+
+    public static int x(long position) {
+        return (int) (position << 1 >> 43);
+    }
+
+    public static int y(long position) {
+        return (int) (position << 22 >> 43);
+    }
+
+    public static int z(long position) {
+        return (int) (position << 43 >> 43);
+    }
+
+    /**
+     * Writes a packed position into an existing vector.
+     *
+     * @param position The packed position
+     * @param target   The vector to write into
+     * @return The target vector
+     */
+    public static Vector3i unpack(long position, Vector3i target) {
+        target.set(x(position), y(position), z(position));
+        return target;
+    }
+
+    /**
+     * @param position The packed position
+     * @param side     The ordinal of a side
+     * @return The packed position of the neighbor on that side
+     */
+    public static long neighbor(long position, int side) {
+        return pack(x(position) + OFFSET_X[side], y(position) + OFFSET_Y[side], z(position) + OFFSET_Z[side]);
+    }
+
+    public static long neighbor(long position, Side side) {
+        return neighbor(position, side.ordinal());
+    }
+
+    /**
+     * @param side The ordinal of a side
+     * @return The ordinal of the opposite side
+     */
+    public static int reverse(int side) {
+        return REVERSE[side];
+    }
+
+    public static Side side(int side) {
+        return SIDES[side];
+    }
+
+    public static int sideBit(Side side) {
+        return 1 << side.ordinal();
+    }
+
+    public static boolean hasSide(int mask, int side) {
+        return (mask & (1 << side)) != 0;
+    }
+}
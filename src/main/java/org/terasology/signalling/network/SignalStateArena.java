@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.util.Arrays;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * Keeps the output strengths of leaves in flat primitive arrays, indexed by a node id handed out per position, instead
+ * of a component holding an array per leaf.
+ * <p>
+ * Every node has six output bytes, in the order of the output sides of the leaf component, and a dirty flag telling
+ * that its outputs changed since they were last copied out. Ids of removed nodes are reused.
+ * <p>
+ * The nodes of every chunk are linked together, so that the nodes of an unloading chunk are found without walking the
+ * whole arena.
+ */
+public class SignalStateArena {
+    public static final int NO_NODE = -1;
+    private static final int SIDE_COUNT = 6;
+    private static final int MINIMUM_CAPACITY = 64;
+
+    private final TLongIntMap ids = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, NO_NODE);
+    private final TLongIntMap chunkHeads = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, NO_NODE);
+    private final LongUnaryOperator chunkOf;
+    private long[] positions = new long[MINIMUM_CAPACITY];
+    private int[] nextInChunk = new int[MINIMUM_CAPACITY];
+    private int[] previousInChunk = new int[MINIMUM_CAPACITY];
+    private byte[] outputs = new byte[MINIMUM_CAPACITY * SIDE_COUNT];
+    private long[] usedBits = new long[MINIMUM_CAPACITY / 64];
+    private long[] dirtyBits = new long[MINIMUM_CAPACITY / 64];
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int nextId;
+
+    /**
+     * @param chunkOf The function giving the packed position of the chunk of a packed position
+     */
+    public SignalStateArena(LongUnaryOperator chunkOf) {
+        this.chunkOf = chunkOf;
+    }
+
+    /**
+     * @param position The packed position of a leaf
+     * @return The id of the node of the position, or {@link #NO_NODE} if there is none
+     */
+    public int get(long position) {
+        return ids.get(position);
+    }
+
+    /**
+     * Adds the node of a position, with every output at 0. The position must not have a node yet.
+     *
+     * @param position The packed position of a leaf
+     * @return The id of the new node
+     */
+    public int add(long position) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = nextId++;
+            if (id == positions.length) {
+                grow(positions.length * 2);
+            }
+        }
+        ids.put(position, id);
+        positions[id] = position;
+        Arrays.fill(outputs, id * SIDE_COUNT, (id + 1) * SIDE_COUNT, (byte) 0);
+        usedBits[id >>> 6] |= 1L << id;
+        dirtyBits[id >>> 6] &= ~(1L << id);
+
+        int head = chunkHeads.put(chunkOf.applyAsLong(position), id);
+        nextInChunk[id] = head;
+        previousInChunk[id] = NO_NODE;
+        if (head != NO_NODE) {
+            previousInChunk[head] = id;
+        }
+        return id;
+    }
+
+    /**
+     * Removes the node of a position, dropping its outputs even if they are dirty.
+     *
+     * @param position The packed position of a leaf
+     */
+    public void remove(long position) {
+        int id = ids.remove(position);
+        if (id == NO_NODE) {
+            return;
+        }
+        usedBits[id >>> 6] &= ~(1L << id);
+        dirtyBits[id >>> 6] &= ~(1L << id);
+
+        int next = nextInChunk[id];
+        int previous = previousInChunk[id];
+        if (previous != NO_NODE) {
+            nextInChunk[previous] = next;
+        } else if (next != NO_NODE) {
+            chunkHeads.put(chunkOf.applyAsLong(position), next);
+        } else {
+            chunkHeads.remove(chunkOf.applyAsLong(position));
+        }
+        if (next != NO_NODE) {
+            previousInChunk[next] = previous;
+        }
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+
+    public byte getOutput(int id, int index) {
+        return outputs[id * SIDE_COUNT + index];
+    }
+
+    /**
+     * Sets an output of a node and marks the node dirty.
+     */
+    public void setOutput(int id, int index, byte strength) {
+        outputs[id * SIDE_COUNT + index] = strength;
+        dirtyBits[id >>> 6] |= 1L << id;
+    }
+
+    /**
+     * Sets every output of a node from an array, without marking it dirty.
+     */
+    public void loadOutputs(int id, byte[] source) {
+        System.arraycopy(source, 0, outputs, id * SIDE_COUNT, SIDE_COUNT);
+    }
+
+    /**
+     * Copies every output of a node into an array.
+     */
+    public void copyOutputs(int id, byte[] target) {
+        System.arraycopy(outputs, id * SIDE_COUNT, target, 0, SIDE_COUNT);
+    }
+
+    public long getPosition(int id) {
+        return positions[id];
+    }
+
+    /**
+     * @return One more than the highest id in use so far. Ids below it can be walked with {@link #isUsed(int)}.
+     */
+    public int getIdLimit() {
+        return nextId;
+    }
+
+    /**
+     * @param chunk The packed position of a chunk
+     * @return The id of a node in the chunk, or {@link #NO_NODE} if there is none. The other nodes of the chunk are
+     * walked with {@link #getNextInChunk(int)}.
+     */
+    public int getFirstInChunk(long chunk) {
+        return chunkHeads.get(chunk);
+    }
+
+    /**
+     * @param id The id of a node
+     * @return The id of the next node in the same chunk, or {@link #NO_NODE} if there is none. Read it before removing
+     * the node.
+     */
+    public int getNextInChunk(int id) {
+        return nextInChunk[id];
+    }
+
+    public boolean isUsed(int id) {
+        return (usedBits[id >>> 6] & (1L << id)) != 0;
+    }
+
+    public boolean isDirty(int id) {
+        return (dirtyBits[id >>> 6] & (1L << id)) != 0;
+    }
+
+    public void clearDirty(int id) {
+        dirtyBits[id >>> 6] &= ~(1L << id);
+    }
+
+    /**
+     * @return The number of nodes
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    public void clear() {
+        ids.clear();
+        chunkHeads.clear();
+        Arrays.fill(usedBits, 0);
+        Arrays.fill(dirtyBits, 0);
+        freeCount = 0;
+        nextId = 0;
+    }
+
+    private void grow(int capacity) {
+        positions = Arrays.copyOf(positions, capacity);
+        nextInChunk = Arrays.copyOf(nextInChunk, capacity);
+        previousInChunk = Arrays.copyOf(previousInChunk, capacity);
+        outputs = Arrays.copyOf(outputs, capacity * SIDE_COUNT);
+        usedBits = Arrays.copyOf(usedBits, capacity / 64);
+        dirtyBits = Arrays.copyOf(dirtyBits, capacity / 64);
+    }
+}
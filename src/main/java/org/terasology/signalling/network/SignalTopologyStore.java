@@ -0,0 +1,160 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+import gnu.trove.impl.Constants;
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+/**
+ * The connectivity of signal blocks by packed position: node type, and the masks of world-space (already rotated)
+ * input and output sides of leaves, for single signals and for buses, packed into one int per block.
+ * <p>
+ * The store is a cache: positions are filled on first use and must be invalidated whenever the block at the position
+ * changes. Positions known to hold no signal block are stored too, as {@link #NONE}.
+ */
+public class SignalTopologyStore {
+    public static final int UNKNOWN = -1;
+    public static final int NONE = 0;
+    public static final int CABLE = 1;
+    public static final int LEAF = 2;
+    public static final int BUS_CABLE = 3;
+
+    private static final int MASK_BITS = 6;
+    private static final int SIDE_MASK = (1 << MASK_BITS) - 1;
+    private static final int BUS_SHIFT = 2 * MASK_BITS;
+    private static final int TYPE_SHIFT = 4 * MASK_BITS;
+
+    private final TLongIntMap nodes = new TLongIntHashMap(Constants.DEFAULT_CAPACITY, Constants.DEFAULT_LOAD_FACTOR, 0, UNKNOWN);
+
+    /**
+     * @return The packed node of the position, or {@link #UNKNOWN} if the position has not been stored
+     */
+    public int get(long position) {
+        return nodes.get(position);
+    }
+
+    public void putNone(long position) {
+        nodes.put(position, pack(NONE, 0, 0));
+    }
+
+    public void putCable(long position) {
+        nodes.put(position, pack(CABLE, 0, 0));
+    }
+
+    public void putBusCable(long position) {
+        nodes.put(position, pack(BUS_CABLE, 0, 0));
+    }
+
+    /**
+     * @param inputs  The mask of world-space input sides
+     * @param outputs The mask of world-space output sides
+     * @return The packed node
+     */
+    public int putLeaf(long position, int inputs, int outputs) {
+        return putLeaf(position, inputs, outputs, 0, 0);
+    }
+
+    /**
+     * @param inputs     The mask of world-space input sides
+     * @param outputs    The mask of world-space output sides
+     * @param busInputs  The mask of world-space bus input sides
+     * @param busOutputs The mask of world-space bus output sides
+     * @return The packed node
+     */
+    public int putLeaf(long position, int inputs, int outputs, int busInputs, int busOutputs) {
+        int node = pack(LEAF, inputs, outputs, busInputs, busOutputs);
+        nodes.put(position, node);
+        return node;
+    }
+
+    /**
+     * Stores a packed node read back from a snapshot.
+     */
+    public void put(long position, int node) {
+        nodes.put(position, node);
+    }
+
+    /**
+     * Forgets a position, to be called when its block changes.
+     */
+    public void invalidate(long position) {
+        nodes.remove(position);
+    }
+
+    public void clear() {
+        nodes.clear();
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     * @return An iterator over the stored positions and their packed nodes. The store must not be modified while it is
+     * used.
+     */
+    public TLongIntIterator iterator() {
+        return nodes.iterator();
+    }
+
+    public static int pack(int type, int inputs, int outputs) {
+        return pack(type, inputs, outputs, 0, 0);
+    }
+
+    public static int pack(int type, int inputs, int outputs, int busInputs, int busOutputs) {
+        return type << TYPE_SHIFT | ((busOutputs & SIDE_MASK) << MASK_BITS | busInputs & SIDE_MASK) << BUS_SHIFT
+                | (outputs & SIDE_MASK) << MASK_BITS | inputs & SIDE_MASK;
+    }
+
+    /**
+     * @return {@link #NONE}, {@link #CABLE}, {@link #LEAF} or {@link #BUS_CABLE}
+     */
+    public static int type(int node) {
+        return node >>> TYPE_SHIFT;
+    }
+
+    public static int inputs(int node) {
+        return node & SIDE_MASK;
+    }
+
+    public static int outputs(int node) {
+        return node >>> MASK_BITS & SIDE_MASK;
+    }
+
+    /**
+     * @return The mask of the sides a leaf connects on, inputs and outputs alike
+     */
+    public static int sides(int node) {
+        return (node | node >>> MASK_BITS) & SIDE_MASK;
+    }
+
+    public static int busInputs(int node) {
+        return inputs(node >>> BUS_SHIFT);
+    }
+
+    public static int busOutputs(int node) {
+        return outputs(node >>> BUS_SHIFT);
+    }
+
+    /**
+     * @return The mask of the sides a leaf connects to buses on, inputs and outputs alike
+     */
+    public static int busSides(int node) {
+        return sides(node >>> BUS_SHIFT);
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.map.TLongIntMap;
+import org.junit.Test;
+import org.terasology.signalling.network.SignalPositions;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SignalDeltaTest {
+    @Test
+    public void laterChangesOfASideReplaceEarlierOnes() {
+        SignalDelta delta = new SignalDelta();
+        long leaf = SignalPositions.pack(1, 2, 3);
+        delta.outputChanged(leaf, 0, true);
+        delta.outputChanged(leaf, 4, true);
+        delta.outputChanged(leaf, 0, false);
+
+        int value = delta.getLeaves().get(leaf);
+        assertEquals(0x11, SignalDelta.changedSides(value));
+        assertEquals(0x10, SignalDelta.activeSides(value));
+    }
+
+    @Test
+    public void decodingRestoresTheEncodedChanges() {
+        SignalDelta delta = new SignalDelta();
+        delta.outputChanged(SignalPositions.pack(-5, 60, 1000), 2, true);
+        delta.outputChanged(SignalPositions.pack(-5, 60, 1000), 3, false);
+        delta.outputChanged(SignalPositions.pack(-6, 60, 1000), 5, false);
+        delta.outputChanged(SignalPositions.pack(300000, -200, -300000), 1, true);
+        delta.networkChanged(SignalPositions.pack(-4, 60, 1000), SignalDelta.POWERED);
+        delta.networkChanged(SignalPositions.pack(12, 0, -7), SignalDelta.BUS);
+        delta.networkChanged(SignalPositions.pack(13, 0, -7), SignalDelta.POWERED | SignalDelta.BUS);
+
+        assertSameChanges(delta, SignalDelta.decode(delta.encode()));
+    }
+
+    @Test
+    public void decodingRestoresAnEmptyDelta() {
+        SignalDelta decoded = SignalDelta.decode(new SignalDelta().encode());
+
+        assertTrue(decoded.isEmpty());
+    }
+
+    @Test
+    public void decodingRestoresRandomDeltas() {
+        Random random = new Random(7);
+        for (int trial = 0; trial < 100; trial++) {
+            SignalDelta delta = new SignalDelta();
+            int count = random.nextInt(200);
+            for (int i = 0; i < count; i++) {
+                long position = SignalPositions.pack(random.nextInt(2000) - 1000, random.nextInt(256) - 128, random.nextInt(2000) - 1000);
+                if (random.nextBoolean()) {
+                    delta.outputChanged(position, random.nextInt(6), random.nextBoolean());
+                } else {
+                    delta.networkChanged(position, random.nextInt(4));
+                }
+            }
+
+            assertSameChanges(delta, SignalDelta.decode(delta.encode()));
+        }
+    }
+
+    @Test
+    public void networkFlagsAreReadBack() {
+        assertTrue(SignalDelta.isPowered(SignalDelta.POWERED));
+        assertFalse(SignalDelta.isBus(SignalDelta.POWERED));
+        assertTrue(SignalDelta.isBus(SignalDelta.BUS | SignalDelta.POWERED));
+        assertFalse(SignalDelta.isPowered(0));
+    }
+
+    private static void assertSameChanges(SignalDelta expected, SignalDelta actual) {
+        assertSameEntries(expected.getLeaves(), actual.getLeaves());
+        assertSameEntries(expected.getNetworks(), actual.getNetworks());
+    }
+
+    private static void assertSameEntries(TLongIntMap expected, TLongIntMap actual) {
+        assertEquals(expected.size(), actual.size());
+        for (TLongIntIterator it = expected.iterator(); it.hasNext(); ) {
+            it.advance();
+            assertTrue(actual.containsKey(it.key()));
+            assertEquals(it.value(), actual.get(it.key()));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import gnu.trove.iterator.TLongIntIterator;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.signalling.components.SignalSnapshotComponent;
+import org.terasology.signalling.network.SignalPositions;
+import org.terasology.signalling.network.SignalTopologyStore;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SignalSnapshotCodecTest {
+    private SignalTopologyStore topology;
+    private TLongLongMap deliveredInputs;
+    private TLongObjectMap<SignalSnapshotComponent.ChunkSnapshot> snapshots;
+
+    @Before
+    public void setup() {
+        topology = new SignalTopologyStore();
+        deliveredInputs = newInputs();
+        snapshots = new TLongObjectHashMap<>();
+    }
+
+    @Test
+    public void readingRestoresTheWrittenChunks() {
+        topology.putCable(SignalPositions.pack(0, 0, 0));
+        topology.putBusCable(SignalPositions.pack(31, 63, 31));
+        topology.putLeaf(SignalPositions.pack(-1, 5, -1), 0x3F, 0x01);
+        topology.putLeaf(SignalPositions.pack(-33, 70, 40), 0x02, 0x30, 0x04, 0x08);
+        deliveredInputs.put(SignalPositions.pack(-1, 5, -1), inputs(15, 0, -1, 3, 0, 1));
+        deliveredInputs.put(SignalPositions.pack(-33, 70, 40), inputs(0, 0, 0, 0, 0, 0));
+
+        SignalSnapshotCodec.write(topology, deliveredInputs, chunksOf(topology), snapshots);
+
+        SignalTopologyStore readTopology = new SignalTopologyStore();
+        TLongLongMap readInputs = newInputs();
+        for (SignalSnapshotComponent.ChunkSnapshot snapshot : snapshots.valueCollection()) {
+            SignalSnapshotCodec.read(snapshot, readTopology, readInputs);
+        }
+        assertSameNodes(topology, readTopology);
+        assertEquals(deliveredInputs.size(), readInputs.size());
+        assertEquals(inputs(15, 0, -1, 3, 0, 1), readInputs.get(SignalPositions.pack(-1, 5, -1)));
+        assertEquals(inputs(0, 0, 0, 0, 0, 0), readInputs.get(SignalPositions.pack(-33, 70, 40)));
+    }
+
+    @Test
+    public void positionsKnownToHoldNoSignalBlockAreLeftOut() {
+        long cable = SignalPositions.pack(2, 2, 2);
+        long empty = SignalPositions.pack(3, 2, 2);
+        topology.putCable(cable);
+        topology.putNone(empty);
+
+        SignalSnapshotCodec.write(topology, deliveredInputs, chunksOf(topology), snapshots);
+
+        SignalTopologyStore readTopology = new SignalTopologyStore();
+        SignalSnapshotCodec.read(snapshots.get(SuspendedSignalChunks.chunkOf(cable)), readTopology, newInputs());
+        assertEquals(1, readTopology.size());
+        assertEquals(SignalTopologyStore.CABLE, SignalTopologyStore.type(readTopology.get(cable)));
+    }
+
+    @Test
+    public void onlyTheGivenChunksAreRewritten() {
+        long first = SignalPositions.pack(0, 0, 0);
+        long second = SignalPositions.pack(100, 0, 0);
+        topology.putCable(first);
+        topology.putCable(second);
+        SignalSnapshotCodec.write(topology, deliveredInputs, chunksOf(topology), snapshots);
+        SignalSnapshotComponent.ChunkSnapshot secondSnapshot = snapshots.get(SuspendedSignalChunks.chunkOf(second));
+
+        topology.putNone(first);
+        TLongSet changed = new TLongHashSet();
+        changed.add(SuspendedSignalChunks.chunkOf(first));
+        SignalSnapshotCodec.write(topology, deliveredInputs, changed, snapshots);
+
+        assertNull(snapshots.get(SuspendedSignalChunks.chunkOf(first)));
+        assertTrue(snapshots.get(SuspendedSignalChunks.chunkOf(second)) == secondSnapshot);
+        assertEquals(1, snapshots.size());
+    }
+
+    @Test
+    public void chunksWithOnlyInputsAreKept() {
+        long leaf = SignalPositions.pack(-20, 10, 5);
+        deliveredInputs.put(leaf, inputs(1, 2, 3, 4, 5, 6));
+        TLongSet chunks = new TLongHashSet();
+        chunks.add(SuspendedSignalChunks.chunkOf(leaf));
+
+        SignalSnapshotCodec.write(topology, deliveredInputs, chunks, snapshots);
+
+        TLongLongMap readInputs = newInputs();
+        SignalSnapshotCodec.read(snapshots.get(SuspendedSignalChunks.chunkOf(leaf)), new SignalTopologyStore(), readInputs);
+        assertEquals(inputs(1, 2, 3, 4, 5, 6), readInputs.get(leaf));
+        assertFalse(readInputs.containsKey(SignalPositions.pack(-20, 10, 6)));
+    }
+
+    private static TLongLongMap newInputs() {
+        return new TLongLongHashMap(16, 0.5f, 0, LeafInputs.NONE);
+    }
+
+    private static long inputs(int... strengths) {
+        long packed = 0;
+        for (int side = 0; side < strengths.length; side++) {
+            packed |= (long) (strengths[side] & 0xFF) << (8 * side);
+        }
+        return packed;
+    }
+
+    private static TLongSet chunksOf(SignalTopologyStore store) {
+        TLongSet chunks = new TLongHashSet();
+        for (TLongIntIterator it = store.iterator(); it.hasNext(); ) {
+            it.advance();
+            chunks.add(SuspendedSignalChunks.chunkOf(it.key()));
+        }
+        return chunks;
+    }
+
+    private static void assertSameNodes(SignalTopologyStore expected, SignalTopologyStore actual) {
+        assertEquals(expected.size(), actual.size());
+        for (TLongIntIterator it = expected.iterator(); it.hasNext(); ) {
+            it.advance();
+            assertEquals(it.value(), actual.get(it.key()));
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.componentSystem;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.terasology.entitySystem.entity.EntityRef;
+import org.terasology.math.Side;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SignalTimingWheelTest {
+    private SignalTimingWheel wheel;
+
+    @Before
+    public void setup() {
+        wheel = new SignalTimingWheel(10, 4);
+    }
+
+    @Test
+    public void handlersAreDueOnlyOnceTheirTimeHasPassed() {
+        wheel.schedule(handler(Side.TOP, 0, 25));
+
+        assertTrue(wheel.pollDue(20).isEmpty());
+        assertTrue(wheel.pollDue(25).isEmpty());
+        List<SignalSystem.SignalDelayHandler> due = wheel.pollDue(26);
+        assertEquals(1, due.size());
+        assertEquals(25, due.get(0).getTime());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void handlersBeyondOneTurnWaitForTheirTime() {
+        wheel.pollDue(0);
+        wheel.schedule(handler(Side.TOP, 0, 5));
+        // 45 hashes to the same slot as 5, one turn of the wheel later.
+        wheel.schedule(handler(Side.LEFT, 0, 45));
+
+        assertSide(Side.TOP, wheel.pollDue(10));
+        assertTrue(wheel.pollDue(30).isEmpty());
+        assertSide(Side.LEFT, wheel.pollDue(46));
+    }
+
+    @Test
+    public void dueHandlersAreOrderedByTime() {
+        wheel.pollDue(0);
+        wheel.schedule(handler(Side.TOP, 0, 27));
+        wheel.schedule(handler(Side.LEFT, 0, 3));
+        wheel.schedule(handler(Side.RIGHT, 0, 21));
+        wheel.schedule(handler(Side.FRONT, 0, 3));
+
+        assertSides(wheel.pollDue(30), Side.LEFT, Side.FRONT, Side.RIGHT, Side.TOP);
+    }
+
+    @Test
+    public void catchingUpAfterALongPauseKeepsTheOrder() {
+        wheel.pollDue(30);
+        wheel.schedule(handler(Side.TOP, 0, 50));
+        wheel.schedule(handler(Side.LEFT, 0, 30));
+        wheel.schedule(handler(Side.RIGHT, 0, 40));
+        wheel.schedule(handler(Side.FRONT, 0, 65));
+
+        assertSides(wheel.pollDue(1000), Side.LEFT, Side.RIGHT, Side.TOP, Side.FRONT);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void handlersScheduledInThePastAreDueOnTheNextPoll() {
+        wheel.pollDue(100);
+        wheel.schedule(handler(Side.TOP, 0, 40));
+
+        assertSide(Side.TOP, wheel.pollDue(101));
+    }
+
+    @Test
+    public void reschedulingReplacesThePendingHandler() {
+        wheel.pollDue(0);
+        wheel.schedule(handler(Side.TOP, 0, 5));
+        wheel.schedule(handler(Side.TOP, 10, 20));
+
+        assertEquals(1, wheel.size());
+        assertEquals(30, wheel.getPending(handler(Side.TOP, 0, 0)).getTime());
+        assertTrue(wheel.pollDue(10).isEmpty());
+        assertSide(Side.TOP, wheel.pollDue(31));
+    }
+
+    @Test
+    public void cancelledHandlersAreNotDue() {
+        wheel.pollDue(0);
+        wheel.schedule(handler(Side.TOP, 0, 5));
+        wheel.schedule(handler(Side.LEFT, 0, 5));
+
+        assertTrue(wheel.cancel(handler(Side.TOP, 0, 0)));
+        assertNull(wheel.getPending(handler(Side.TOP, 0, 0)));
+        assertNotNull(wheel.getPending(handler(Side.LEFT, 0, 0)));
+        assertSide(Side.LEFT, wheel.pollDue(10));
+    }
+
+    private static SignalSystem.SignalDelayHandler handler(Side side, long currentTime, long delta) {
+        return new SignalSystem.SignalDelayHandler(delta, currentTime, EntityRef.NULL, (byte) 1, side);
+    }
+
+    private static void assertSide(Side expected, List<SignalSystem.SignalDelayHandler> due) {
+        assertSides(due, expected);
+    }
+
+    private static void assertSides(List<SignalSystem.SignalDelayHandler> due, Side... expected) {
+        assertEquals(expected.length, due.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], due.get(i).side);
+        }
+    }
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+import com.google.common.collect.Maps;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import org.junit.Test;
+import org.terasology.math.geom.Vector3i;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SignalNetworkModelTest {
+    private final TestWorld world = new TestWorld();
+    private final SignalNetworkModel model = new SignalNetworkModel(world);
+
+    @Test
+    public void removingALinkSplitsTheNetwork() {
+        placeCableLine(0, 4);
+        SignalNetwork network = model.getNetwork(at(0));
+        assertSame(network, model.getNetwork(at(4)));
+        assertEquals(5, network.getCableCount());
+
+        world.remove(at(2));
+        model.cableRemoved(at(2));
+
+        SignalNetwork left = model.getNetwork(at(0));
+        SignalNetwork right = model.getNetwork(at(4));
+        assertNotSame(left, right);
+        assertSame(left, model.getNetwork(at(1)));
+        assertSame(right, model.getNetwork(at(3)));
+        assertEquals(2, left.getCableCount());
+        assertEquals(2, right.getCableCount());
+        assertNull(model.getNetwork(at(2)));
+    }
+
+    @Test
+    public void placingALinkMergesTheNetworks() {
+        placeCableLine(0, 1);
+        placeCableLine(3, 4);
+        assertNotSame(model.getNetwork(at(0)), model.getNetwork(at(4)));
+
+        world.cable(at(2));
+        model.cableAdded(at(2));
+
+        SignalNetwork network = model.getNetwork(at(0));
+        assertSame(network, model.getNetwork(at(4)));
+        assertEquals(5, network.getCableCount());
+    }
+
+    @Test
+    public void removingACableOfALoopKeepsOneNetwork() {
+        long[] ring = {
+                SignalPositions.pack(0, 0, 0), SignalPositions.pack(1, 0, 0), SignalPositions.pack(2, 0, 0),
+                SignalPositions.pack(2, 0, 1), SignalPositions.pack(2, 0, 2), SignalPositions.pack(1, 0, 2),
+                SignalPositions.pack(0, 0, 2), SignalPositions.pack(0, 0, 1)};
+        for (long cable : ring) {
+            world.cable(cable);
+            model.cableAdded(cable);
+        }
+
+        world.remove(ring[1]);
+        model.cableRemoved(ring[1]);
+
+        SignalNetwork network = model.getNetwork(ring[0]);
+        assertSame(network, model.getNetwork(ring[2]));
+        assertEquals(7, network.getCableCount());
+    }
+
+    @Test
+    public void splitPiecesKeepTheirOwnLeaves() {
+        placeCableLine(0, 4);
+        placeLeaf(at(-1));
+        placeLeaf(at(5));
+        assertEquals(2, model.getLeafDistances(at(0)).size());
+
+        world.remove(at(2));
+        model.cableRemoved(at(2));
+
+        LeafDistances left = model.getLeafDistances(at(0));
+        LeafDistances right = model.getLeafDistances(at(4));
+        assertEquals(1, left.size());
+        assertEquals(at(-1), left.getPosition(0));
+        assertEquals(1, right.size());
+        assertEquals(at(5), right.getPosition(0));
+        assertEquals(1, right.getDistance(0));
+    }
+
+    @Test
+    public void inputsFadeByOnePerCable() {
+        placeCableLine(0, 4);
+        placeLeaf(at(-1));
+        placeLeaf(at(5));
+        world.output(at(-1), sideTowards(at(-1), at(0)), 10);
+
+        // The signal enters the first cable at 9 and crosses four more cables.
+        assertEquals(5, model.resolveInput(at(5), sideTowards(at(5), at(4))));
+    }
+
+    @Test
+    public void leavesDoNotReceiveTheirOwnOutput() {
+        placeCableLine(0, 2);
+        placeLeaf(at(-1));
+        placeLeaf(at(3));
+        world.output(at(-1), sideTowards(at(-1), at(0)), 10);
+        world.output(at(3), sideTowards(at(3), at(2)), 4);
+
+        assertEquals(1, model.resolveInput(at(-1), sideTowards(at(-1), at(0))));
+        assertEquals(7, model.resolveInput(at(3), sideTowards(at(3), at(2))));
+    }
+
+    @Test
+    public void infiniteOutputsReachEveryOtherLeaf() {
+        placeCableLine(0, 20);
+        placeLeaf(at(-1));
+        placeLeaf(at(21));
+        world.output(at(-1), sideTowards(at(-1), at(0)), -1);
+
+        assertEquals(-1, model.resolveInput(at(21), sideTowards(at(21), at(20))));
+        assertEquals(0, model.resolveInput(at(-1), sideTowards(at(-1), at(0))));
+    }
+
+    /**
+     * Compares the inputs resolved by the multi-source walk with a breadth-first walk from every receiving side, on
+     * random cable layouts.
+     */
+    @Test
+    public void resolvedInputsMatchAWalkFromEachReceiver() {
+        Random random = new Random(2);
+        for (int trial = 0; trial < 200; trial++) {
+            TestWorld randomWorld = new TestWorld();
+            TLongSet leaves = new TLongHashSet();
+            int size = 4 + random.nextInt(6);
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < 3; y++) {
+                    for (int z = 0; z < size; z++) {
+                        long position = SignalPositions.pack(x, y, z);
+                        int kind = random.nextInt(10);
+                        if (kind < 6) {
+                            randomWorld.cable(position);
+                        } else if (kind < 8) {
+                            randomWorld.leaf(position, SignalPositions.ALL_SIDES);
+                            leaves.add(position);
+                            for (int side = 0; side < 6; side++) {
+                                boolean infinite = trial % 3 == 0 && random.nextInt(20) == 0;
+                                randomWorld.output(position, side, infinite ? -1 : random.nextInt(12));
+                            }
+                        }
+                    }
+                }
+            }
+            SignalNetworkModel randomModel = new SignalNetworkModel(randomWorld);
+            for (long leaf : leaves.toArray()) {
+                for (int side = 0; side < 6; side++) {
+                    if (randomWorld.isCable(SignalPositions.neighbor(leaf, side))) {
+                        assertEquals("trial " + trial, walkInput(randomWorld, leaves, leaf, side), randomModel.resolveInput(leaf, side));
+                    }
+                }
+            }
+        }
+    }
+
+    private static int walkInput(TestWorld world, TLongSet leaves, long receiver, int side) {
+        TLongIntMap distances = new TLongIntHashMap();
+        ArrayDeque<Long> toVisit = new ArrayDeque<>();
+        long start = SignalPositions.neighbor(receiver, side);
+        distances.put(start, 0);
+        toVisit.add(start);
+        while (!toVisit.isEmpty()) {
+            long cable = toVisit.poll();
+            for (int cableSide = 0; cableSide < 6; cableSide++) {
+                long neighbor = SignalPositions.neighbor(cable, cableSide);
+                if (world.isCable(neighbor) && !distances.containsKey(neighbor)) {
+                    distances.put(neighbor, distances.get(cable) + 1);
+                    toVisit.add(neighbor);
+                }
+            }
+        }
+        int strength = 0;
+        for (long leaf : leaves.toArray()) {
+            if (leaf == receiver) {
+                continue;
+            }
+            for (int leafSide = 0; leafSide < 6; leafSide++) {
+                long cable = SignalPositions.neighbor(leaf, leafSide);
+                if (!distances.containsKey(cable)) {
+                    continue;
+                }
+                int output = world.getOutput(leaf, leafSide);
+                if (output == -1) {
+                    return -1;
+                }
+                strength = Math.max(strength, output - 1 - distances.get(cable));
+            }
+        }
+        return strength;
+    }
+
+    private void placeCableLine(int fromX, int toX) {
+        for (int x = fromX; x <= toX; x++) {
+            world.cable(at(x));
+            model.cableAdded(at(x));
+        }
+    }
+
+    private void placeLeaf(long position) {
+        world.leaf(position, SignalPositions.ALL_SIDES);
+        model.leafAdded(position);
+    }
+
+    private static long at(int x) {
+        return SignalPositions.pack(x, 0, 0);
+    }
+
+    private static int sideTowards(long from, long to) {
+        for (int side = 0; side < 6; side++) {
+            if (SignalPositions.neighbor(from, side) == to) {
+                return side;
+            }
+        }
+        throw new IllegalArgumentException("Not neighbors");
+    }
+
+    /**
+     * The cables and leaves of a test, by packed position.
+     */
+    private static class TestWorld implements SignalNodeLookup {
+        private final TLongSet cables = new TLongHashSet();
+        private final TLongIntMap leafSides = new TLongIntHashMap();
+        private final Map<Long, int[]> outputs = Maps.newHashMap();
+
+        void cable(long position) {
+            cables.add(position);
+        }
+
+        void leaf(long position, int sides) {
+            leafSides.put(position, sides);
+            outputs.put(position, new int[6]);
+        }
+
+        void output(long position, int side, int strength) {
+            outputs.get(position)[side] = strength;
+        }
+
+        void remove(long position) {
+            cables.remove(position);
+            leafSides.remove(position);
+            outputs.remove(position);
+        }
+
+        boolean isCable(long position) {
+            return cables.contains(position);
+        }
+
+        int getOutput(long position, int side) {
+            int[] leafOutputs = outputs.get(position);
+            return leafOutputs != null ? leafOutputs[side] : 0;
+        }
+
+        @Override
+        public boolean isCable(Vector3i position) {
+            return cables.contains(SignalPositions.pack(position));
+        }
+
+        @Override
+        public boolean isLeaf(Vector3i position) {
+            return leafSides.containsKey(SignalPositions.pack(position));
+        }
+
+        @Override
+        public int getLeafSides(Vector3i position) {
+            return leafSides.get(SignalPositions.pack(position));
+        }
+
+        @Override
+        public int getLeafOutput(Vector3i position, int side) {
+            return getOutput(SignalPositions.pack(position), side);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 MovingBlocks
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.terasology.signalling.network;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SignalStateArenaTest {
+    private static final int CHUNK_SIZE = 32;
+
+    private final SignalStateArena arena = new SignalStateArena(SignalStateArenaTest::chunkOf);
+
+    @Test
+    public void nodesAreLinkedByChunk() {
+        arena.add(SignalPositions.pack(0, 0, 0));
+        arena.add(SignalPositions.pack(31, 5, 31));
+        arena.add(SignalPositions.pack(32, 0, 0));
+        arena.add(SignalPositions.pack(-1, 0, 0));
+
+        assertEquals(2, chunkNodes(chunkOf(SignalPositions.pack(0, 0, 0))).size());
+        assertEquals(1, chunkNodes(chunkOf(SignalPositions.pack(32, 0, 0))).size());
+        assertEquals(1, chunkNodes(chunkOf(SignalPositions.pack(-1, 0, 0))).size());
+        assertEquals(SignalStateArena.NO_NODE, arena.getFirstInChunk(chunkOf(SignalPositions.pack(100, 0, 0))));
+    }
+
+    @Test
+    public void removedNodesLeaveTheirChunk() {
+        long[] positions = new long[5];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = SignalPositions.pack(i, 0, 0);
+            arena.add(positions[i]);
+        }
+        long chunk = chunkOf(positions[0]);
+
+        // The middle, the most recently added and the oldest node of the chunk.
+        arena.remove(positions[2]);
+        arena.remove(positions[4]);
+        arena.remove(positions[0]);
+        TLongSet remaining = chunkNodes(chunk);
+        assertEquals(2, remaining.size());
+        assertTrue(remaining.contains(positions[1]));
+        assertTrue(remaining.contains(positions[3]));
+
+        arena.remove(positions[1]);
+        arena.remove(positions[3]);
+        assertEquals(SignalStateArena.NO_NODE, arena.getFirstInChunk(chunk));
+    }
+
+    @Test
+    public void nodesCanBeReleasedWhileWalkingTheirChunk() {
+        for (int i = 0; i < 10; i++) {
+            arena.add(SignalPositions.pack(i, 0, 0));
+        }
+        long chunk = chunkOf(SignalPositions.pack(0, 0, 0));
+
+        int node = arena.getFirstInChunk(chunk);
+        int released = 0;
+        while (node != SignalStateArena.NO_NODE) {
+            int next = arena.getNextInChunk(node);
+            arena.remove(arena.getPosition(node));
+            released++;
+            node = next;
+        }
+
+        assertEquals(10, released);
+        assertEquals(0, arena.size());
+        assertEquals(SignalStateArena.NO_NODE, arena.getFirstInChunk(chunk));
+    }
+
+    @Test
+    public void chunkLinksMatchTheNodesAfterRandomChanges() {
+        Random random = new Random(3);
+        TLongSet present = new TLongHashSet();
+        for (int step = 0; step < 5000; step++) {
+            long position = SignalPositions.pack(random.nextInt(96) - 48, random.nextInt(4), random.nextInt(96) - 48);
+            if (present.contains(position)) {
+                arena.remove(position);
+                present.remove(position);
+            } else {
+                arena.add(position);
+                present.add(position);
+            }
+        }
+
+        int linked = 0;
+        for (int x = -2; x < 2; x++) {
+            for (int z = -2; z < 2; z++) {
+                long chunk = SignalPositions.pack(x, 0, z);
+                for (long position : chunkNodes(chunk).toArray()) {
+                    assertTrue(present.contains(position));
+                    assertEquals(chunk, chunkOf(position));
+                    linked++;
+                }
+            }
+        }
+        assertEquals(present.size(), linked);
+    }
+
+    private TLongSet chunkNodes(long chunk) {
+        TLongSet positions = new TLongHashSet();
+        for (int node = arena.getFirstInChunk(chunk); node != SignalStateArena.NO_NODE; node = arena.getNextInChunk(node)) {
+            assertTrue(arena.isUsed(node));
+            positions.add(arena.getPosition(node));
+        }
+        return positions;
+    }
+
+    private static long chunkOf(long position) {
+        return SignalPositions.pack(Math.floorDiv(SignalPositions.x(position), CHUNK_SIZE), 0,
+                Math.floorDiv(SignalPositions.z(position), CHUNK_SIZE));
+    }
+}